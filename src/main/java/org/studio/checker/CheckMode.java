@@ -0,0 +1,29 @@
+package org.studio.checker;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * What is done to a pack.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CheckMode {
+
+    /** Only check. */
+    CHECK(false, false),
+    /** Check, and repair if needed. */
+    REPAIR(true, false),
+    /** Check, and repair and compress if needed. */
+    COMPRESS(true, true);
+
+    private final boolean repair;
+    private final boolean compress;
+
+    public static CheckMode of(boolean repair, boolean compress) {
+        if (compress) {
+            return COMPRESS;
+        }
+        return repair ? REPAIR : CHECK;
+    }
+}
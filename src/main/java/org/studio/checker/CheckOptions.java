@@ -0,0 +1,28 @@
+package org.studio.checker;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * Options of a pack check.
+ */
+@Value
+@Builder(toBuilder = true)
+public class CheckOptions {
+
+    @Builder.Default
+    CheckMode mode = CheckMode.CHECK;
+    /** Folder of the repaired pack, pack folder if null. */
+    Path outputDir;
+    /** Overwrite the pack instead of writing a converted one aside. */
+    boolean force;
+    /** Increase version pack number if modified. */
+    boolean increaseVersion;
+
+    /** Options changing a check result. */
+    public String fingerprint() {
+        return "repair=" + mode.isRepair() + ",compress=" + mode.isCompress() + ",inc=" + increaseVersion;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import studio.core.v1.model.StoryPack;
 
 import java.nio.file.Path;
+import java.util.UUID;
 
 @Data
 @RequiredArgsConstructor
@@ -14,14 +15,17 @@ public class CheckResult {
 
     private final Path path;
     private final CheckResultEnum result;
-    private StoryPack storyPack;
     private Exception exception;
     private String message;
+    // Pack summary : the StoryPack (and its assets) is not kept once checked
+    private boolean summary;
+    private String title;
+    private short version;
+    private UUID uuid;
+    private boolean thumbnail;
 
     public static CheckResult ok(Path path, StoryPack storyPack) {
-        CheckResult checkResult = new CheckResult(path, CheckResultEnum.OK);
-        checkResult.setStoryPack(storyPack);
-        return checkResult;
+        return new CheckResult(path, CheckResultEnum.OK).withSummary(storyPack);
     }
 
     public static CheckResult ko(Path path, Exception exception) {
@@ -30,6 +34,12 @@ public class CheckResult {
         return checkResult;
     }
 
+    public static CheckResult timeout(Path path, Exception exception) {
+        CheckResult checkResult = new CheckResult(path, CheckResultEnum.TIMEOUT);
+        checkResult.setException(exception);
+        return checkResult;
+    }
+
     public static CheckResult ko(Path path, String message) {
         CheckResult checkResult = new CheckResult(path, CheckResultEnum.KO);
         checkResult.setMessage(message);
@@ -37,15 +47,22 @@ public class CheckResult {
     }
 
     public static CheckResult repair(Path path, StoryPack storyPack) {
-        CheckResult checkResult = new CheckResult(path, CheckResultEnum.REPAIR);
-        checkResult.setStoryPack(storyPack);
-        return checkResult;
+        return new CheckResult(path, CheckResultEnum.REPAIR).withSummary(storyPack);
     }
 
     public static CheckResult compress(Path path, StoryPack storyPack) {
-        CheckResult checkResult = new CheckResult(path, CheckResultEnum.COMPRESS);
-        checkResult.setStoryPack(storyPack);
-        return checkResult;
+        return new CheckResult(path, CheckResultEnum.COMPRESS).withSummary(storyPack);
+    }
+
+    private CheckResult withSummary(StoryPack storyPack) {
+        if (storyPack != null) {
+            summary = true;
+            title = storyPack.getEnriched() != null ? storyPack.getEnriched().getTitle() : null;
+            version = storyPack.getVersion();
+            uuid = storyPack.getUuid();
+            thumbnail = storyPack.getEnriched() != null && storyPack.getEnriched().getThumbnail() != null;
+        }
+        return this;
     }
 
     public void showResult() {
@@ -57,6 +74,9 @@ public class CheckResult {
                     log.error("KO : {} pack checked with errors : {}", path.getFileName(), message);
                 }
                 break;
+            case TIMEOUT:
+                log.error("TIMEOUT : {} pack not checked in time : {}", path.getFileName(), exception.getMessage());
+                break;
             case OK:
                 log.info("OK : {} pack checked with no error", path.getFileName());
                 break;
@@ -69,17 +89,22 @@ public class CheckResult {
             default:
                 throw new IllegalArgumentException();
         }
-        if (storyPack != null) {
-            log.info("Title : {}", storyPack.getEnriched().getTitle());
-            log.info("Version : {}", storyPack.getVersion());
-            log.info("UUID : {}", storyPack.getUuid());
-            log.info("Thumbnail : {}", storyPack.getEnriched().getThumbnail() != null);
+        if (summary) {
+            log.info("Title : {}", title);
+            log.info("Version : {}", version);
+            log.info("UUID : {}", uuid);
+            log.info("Thumbnail : {}", thumbnail);
         }
     }
 
+    /** KO or timed out. */
+    public boolean isFailed() {
+        return result == CheckResultEnum.KO || result == CheckResultEnum.TIMEOUT;
+    }
+
     public enum CheckResultEnum {
 
-        OK, REPAIR, COMPRESS, KO
+        OK, REPAIR, COMPRESS, KO, TIMEOUT
 
     }
 
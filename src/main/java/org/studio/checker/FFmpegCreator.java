@@ -3,34 +3,70 @@ package org.studio.checker;
 import net.bramp.ffmpeg.FFmpeg;
 import net.bramp.ffmpeg.FFmpegExecutor;
 import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.ProcessFunction;
+import net.bramp.ffmpeg.RunProcessFunction;
+import org.studio.checker.engine.Cancellation;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
 
+/**
+ * FFmpeg binaries, located on first use.
+ */
 public class FFmpegCreator {
 
-    private static FFmpeg ffmpeg;
-    private static FFprobe ffprobe;
-    private static FFmpegExecutor fFmpegExecutor;
+    // FFmpeg processes are tracked by the current cancellation scope, to be killed with it
+    private static final RunProcessFunction RUN_PROCESS = new RunProcessFunction();
+    private static final ProcessFunction TRACKED_PROCESS = args -> Cancellation.current().track(RUN_PROCESS.run(args));
+    /** FFprobe from PATH or FFPROBE env, as the FFprobe default. */
+    static final String DEFAULT_FFPROBE_PATH = Objects.requireNonNullElse(System.getenv("FFPROBE"), "ffprobe");
 
-    public static FFmpegExecutor getFFmpegExecutor() throws IOException {
+    private final String ffmpegPath;
+
+    private FFmpeg ffmpeg;
+    private FFprobe ffprobe;
+    private FFmpegExecutor fFmpegExecutor;
+
+    public FFmpegCreator() {
+        this(FFmpeg.DEFAULT_PATH);
+    }
+
+    public FFmpegCreator(String ffmpegPath) {
+        this.ffmpegPath = ffmpegPath;
+    }
+
+    public synchronized FFmpegExecutor getFFmpegExecutor() throws IOException {
         if (fFmpegExecutor == null) {
             fFmpegExecutor = new FFmpegExecutor(getFFmpeg(), getFFProbe());
         }
         return fFmpegExecutor;
     }
 
-    public static FFmpeg getFFmpeg() throws IOException {
+    public synchronized FFmpeg getFFmpeg() throws IOException {
         if (ffmpeg == null) {
-            ffmpeg = new FFmpeg();
+            ffmpeg = new FFmpeg(ffmpegPath, TRACKED_PROCESS);
         }
         return ffmpeg;
     }
 
-    public static FFprobe getFFProbe() throws IOException {
+    public synchronized FFprobe getFFProbe() throws IOException {
         if (ffprobe == null) {
-            ffprobe = new FFprobe();
+            ffprobe = new FFprobe(ffprobePath(ffmpegPath), TRACKED_PROCESS);
         }
         return ffprobe;
     }
 
+    /** FFprobe next to the FFmpeg binary, with the same extension : the default one if FFmpeg is found from PATH. */
+    static String ffprobePath(String ffmpegPath) {
+        Path path = Paths.get(ffmpegPath);
+        if (path.getParent() == null) {
+            return DEFAULT_FFPROBE_PATH;
+        }
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return path.resolveSibling("ffprobe" + (dot > 0 ? name.substring(dot) : "")).toString();
+    }
+
 }
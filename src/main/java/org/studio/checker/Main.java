@@ -1,47 +1,65 @@
 package org.studio.checker;
 
 import lombok.extern.slf4j.Slf4j;
-import me.tongfei.progressbar.ProgressBar;
-import me.tongfei.progressbar.ProgressBarBuilder;
-import org.studio.checker.processor.AudioProcessor;
-import org.studio.checker.processor.ImageProcessor;
+import org.studio.checker.batch.BatchJournal;
+import org.studio.checker.batch.LeaseQueue;
+import org.studio.checker.batch.PackBuffer;
+import org.studio.checker.batch.PackBundle;
+import org.studio.checker.batch.PackDiscovery;
+import org.studio.checker.batch.PackManifest;
+import org.studio.checker.batch.PackWatcher;
+import org.studio.checker.batch.Shard;
+import org.studio.checker.engine.MemoryGovernor;
+import org.studio.checker.engine.PackCost;
+import org.studio.checker.engine.PackEstimate;
+import org.studio.checker.engine.SchedulingPolicy;
+import org.studio.checker.processor.Warmup;
+import org.studio.checker.service.JobService;
 import picocli.CommandLine;
-import studio.core.v1.exception.StoryTellerException;
-import studio.core.v1.model.StoryPack;
-import studio.core.v1.model.asset.MediaAsset;
-import studio.core.v1.model.asset.MediaAssetType;
-import studio.core.v1.model.metadata.StoryPackMetadata;
-import studio.core.v1.service.PackFormat;
-import studio.core.v1.utils.stream.StoppingConsumer;
-import studio.core.v1.utils.stream.ThrowingFunction;
+import studio.core.v1.utils.io.FileUtils;
+import studio.core.v1.utils.io.IoThrottle;
 
+import static studio.core.v1.utils.io.FileUtils.readableByteSize;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @CommandLine.Command(name = "studio-pack-checker", mixinStandardHelpOptions = true, version = "studio-pack-checker 0.1",
         description = "Check and compress archive packs for STUdio.", defaultValueProvider = CommandLine.PropertiesDefaultProvider.class)
 @Slf4j
 public class Main implements Callable<Integer> {
 
-    private static final String CONVERTED_SPC_ZIP = "_converted_spc.zip";
-
-    private static long startTime = System.currentTimeMillis();
+    private static final long MB = 1024 * 1024L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Pack read from stdin, or written to stdout. */
+    private static final String STDIO = "-";
 
-    @CommandLine.Parameters(index = "0", description = "The folder where are packs or the filepath of a unique pack.")
+    @CommandLine.Parameters(index = "0", arity = "0..1", description = "The folder where are packs, the filepath of a unique pack or of a bundle of packs (tar or zip), '-' to read a pack from stdin.")
     private Path inputPath;
 
-    @CommandLine.Option(names = {"-o", "--outputdir"}, description = "The output folder, same as input folder if not specified")
+    @CommandLine.Option(names = {"-o", "--outputdir"}, description = "The output folder, same as input folder if not specified, '-' to write the pack to stdout, or the output bundle (tar or zip) of an input bundle")
     private Path outputPath;
 
     @CommandLine.Option(names = {"-r", "--repair"}, description = "Repair if needed the pack file")
@@ -59,148 +77,594 @@ public class Main implements Callable<Integer> {
     @CommandLine.Option(names = {"-i", "--inc"}, description = "Increase version pack number if modification")
     private boolean increaseVersion;
 
-    private enum MediaGroup {
-        AUDIO, IMAGE;
-    }
+    @CommandLine.Option(names = {"-j", "--jobs"}, defaultValue = "1", description = "Number of packs processed concurrently")
+    private int jobs;
+
+    @CommandLine.Option(names = {"--asset-threads"}, description = "Size of the shared assets pool (default: number of processors)")
+    private int assetThreads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names = {"--schedule"}, defaultValue = "LONGEST_FIRST", description = "Packs dispatch order: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private SchedulingPolicy schedule;
+
+    @CommandLine.Option(names = {"--max-inflight"}, defaultValue = "64", description = "Maximum assets working set in flight per pack, in MB (default: ${DEFAULT-VALUE})")
+    private long maxInflight;
+
+    @CommandLine.Option(names = {"--memory-budget"}, defaultValue = "0", description = "Global memory budget for packs and assets, in MB (default: detected from max heap and container limit)")
+    private long memoryBudget;
+
+    @CommandLine.Option(names = {"--io-limit"}, defaultValue = "0", description = "Read and write bandwidth limit of all threads, in MB/s (default: none)")
+    private long ioLimit;
+
+    @CommandLine.Option(names = {"--iops-limit"}, defaultValue = "0", description = "I/O operations per second limit of all threads (default: none)")
+    private long iopsLimit;
+
+    @CommandLine.Option(names = {"--fail-fast"}, description = "Stop a pack on its first asset failure, killing its running conversions")
+    private boolean failFast;
+
+    @CommandLine.Option(names = {"--asset-timeout"}, defaultValue = "0", description = "Maximum conversion time of an asset, in seconds (default: none)")
+    private long assetTimeout;
+
+    @CommandLine.Option(names = {"--pack-timeout"}, defaultValue = "0", description = "Maximum processing time of a pack, in seconds (default: none)")
+    private long packTimeout;
+
+    @CommandLine.Option(names = {"--incremental"}, description = "Skip packs unchanged and OK since the last run, as recorded in the output folder manifest")
+    private boolean incremental;
+
+    @CommandLine.Option(names = {"--skip-failed"}, description = "When resuming an interrupted run, skip the packs that failed in it instead of retrying them")
+    private boolean skipFailed;
+
+    @CommandLine.Option(names = {"--shard"}, converter = Shard.Converter.class, description = "Only process the slice i of n of the packs, for many nodes sharing the storage (e.g. 2/4)")
+    private Shard shard;
+
+    @CommandLine.Option(names = {"--queue"}, description = "Shared queue folder : many processes, on many nodes, claim the packs through lease files in it")
+    private Path queuePath;
+
+    @CommandLine.Option(names = {"--lease-ttl"}, defaultValue = "60", description = "Lease time to live in seconds, before the pack of a dead worker is reclaimed (default: ${DEFAULT-VALUE})")
+    private long leaseTtl;
+
+    @CommandLine.Option(names = {"--watch"}, description = "Keep running, and process the packs added to the input folder")
+    private boolean watch;
+
+    @CommandLine.Option(names = {"--settle"}, defaultValue = "5", description = "Delay without change before a watched pack is processed, in seconds (default: ${DEFAULT-VALUE})")
+    private long settle;
+
+    @CommandLine.Option(names = {"--warmup"}, description = "Warm up the image and audio conversions before the first pack. Without input : process a synthetic pack and exit (training run of a class data sharing archive)")
+    private boolean warmup;
+
+    @CommandLine.Option(names = {"--serve"}, description = "Start as a local HTTP service on this port, instead of processing the input. Jobs by path are limited to the input folder, and rejected without one")
+    private Integer servePort;
+
+    @CommandLine.Option(names = {"--bind"}, defaultValue = "127.0.0.1", description = "Address of the HTTP service (default: ${DEFAULT-VALUE})")
+    private String bindAddress;
+
+    @CommandLine.Option(names = {"--serve-capacity"}, defaultValue = "32", description = "Maximum jobs queued or running in the HTTP service, beyond which jobs are rejected (default: ${DEFAULT-VALUE})")
+    private int serveCapacity;
+
+    @CommandLine.Option(names = {"--serve-max-upload"}, defaultValue = "1024", description = "Maximum size in MB of a pack uploaded to the HTTP service (default: ${DEFAULT-VALUE})")
+    private long serveMaxUpload;
+
+    @CommandLine.Option(names = {"-R", "--recursive"}, description = "Find packs in the sub-folders of the input folder too")
+    private boolean recursive;
+
+    @CommandLine.Option(names = {"--include"}, description = "Glob of the packs to process, relative to the input folder or on the file name (e.g. '**/*.zip'), repeatable")
+    private List<String> includes;
+
+    @CommandLine.Option(names = {"--exclude"}, description = "Glob of the packs to skip, relative to the input folder or on the file name, repeatable")
+    private List<String> excludes;
+
+    @CommandLine.Option(names = {"--estimate"}, description = "Only estimate conversion time and size savings of a compress run (or repair run with -r), from a few sampled assets per pack")
+    private boolean estimate;
+
+    @CommandLine.Option(names = {"--estimate-samples"}, defaultValue = "3", description = "Assets sampled per type and pack in estimate mode (default: ${DEFAULT-VALUE})")
+    private int estimateSamples;
+
+    @CommandLine.Option(names = {"--discovery-threads"}, defaultValue = "8", description = "Folders listed at once when finding packs (default: ${DEFAULT-VALUE})")
+    private int discoveryThreads;
+
+    private PackChecker checker;
+    private PackManifest manifest;
+    private BatchJournal journal;
+    /** I/O limits of the run, shared by the checker, bundles and the input pack stream. */
+    private IoThrottle ioThrottle;
+    /** Released once the run is over and everything is closed, for the shutdown hook. */
+    private final CountDownLatch closed = new CountDownLatch(1);
 
     // this example implements Callable, so parsing, error handling and handling user
     // requests for usage help or version help can be done with one line of code.
     public static void main(String... args) {
-        CommandLine cmd = new CommandLine(new Main());
+        long startTime = System.currentTimeMillis();
+        Main main = new Main();
+        CommandLine cmd = new CommandLine(main);
         File defaultsFile = new File("command.properties");
         cmd.setDefaultValueProvider(new CommandLine.PropertiesDefaultProvider(defaultsFile));
         int exitCode = cmd.execute(args);
 
         log.info("End of studio-pack-checker in {} seconds", (System.currentTimeMillis() - startTime) / 1000);
+        main.closed.countDown();
         System.exit(exitCode);
     }
 
     @Override
     public Integer call() throws Exception { // your business logic goes here...
+        PrintStream packOut = null;
+        if (isStdio(inputPath) || isStdio(outputPath)) {
+            // Pack is written to stdout : logs go to stderr
+            packOut = System.out;
+            System.setOut(System.err);
+        }
         log.info("Starting studio-pack-checker");
 
         repair = compress || repair; // If compress is activated, so repair too
+        ioThrottle = new IoThrottle(ioLimit * MB, iopsLimit);
+        if (servePort != null) {
+            return serve();
+        }
+        if (inputPath == null && warmup) {
+            return train();
+        }
+        if (inputPath == null) {
+            log.error("Missing input folder or pack");
+            return 2;
+        }
+        if (packOut != null) {
+            return streamPack(packOut);
+        }
+        if (estimate) {
+            return estimate();
+        }
+        if (PackBundle.isBundle(inputPath)) {
+            return processBundle();
+        }
         if (outputPath == null) {
             outputPath = Files.isDirectory(inputPath) ? inputPath : inputPath.getParent();
         }
+        Files.createDirectories(outputPath);
+        if (watch && (!Files.isDirectory(inputPath) || shard != null || queuePath != null || recursive)) {
+            log.error("Watch mode needs an input folder, not recursive, and no shard nor queue");
+            return 2;
+        }
+        if (warmup) {
+            Warmup.run();
+        }
 
-        if (Files.isDirectory(inputPath)) {
-            try (Stream<Path> list = Files.list(inputPath)) {
-                list.filter(path -> ThrowingFunction.unchecked(internPath -> Files.isRegularFile(path) && !Files.isHidden(path)).apply(path)).forEach(this::checkPackWithResult);
+        String stateSuffix = shard != null ? shard.fileSuffix() : ""; // Nodes share the output folder : one state per shard
+        if (incremental) {
+            manifest = PackManifest.load(outputPath, stateSuffix);
+        }
+        if (repair && queuePath == null) {
+            // Resume an interrupted batch (the queue resumes by itself)
+            journal = BatchJournal.open(outputPath, stateSuffix);
+            if (journal.isResumed()) {
+                log.info("Resuming interrupted run");
+                journal.recover(p -> PackChecker.isValidOutput(p, ioThrottle), !skipFailed);
+            }
+        }
+        String fingerprint = options(outputPath, CheckMode.of(repair, compress)).fingerprint();
+        AtomicInteger unchanged = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        Predicate<Path> pending = path -> {
+            if (manifest != null && manifest.isUnchangedAndOk(path, fingerprint)) {
+                unchanged.incrementAndGet();
+                return false;
+            }
+            if (journal != null && journal.isDone(path)) {
+                done.incrementAndGet();
+                return false;
+            }
+            return true;
+        };
+        PackDiscovery discovery = Files.isDirectory(inputPath)
+                ? new PackDiscovery(inputPath, recursive, includes, excludes, this::isPack, discoveryThreads) : null;
+
+        // Watch before the first batch, not to miss arrivals
+        try (PackWatcher watcher = watch ? new PackWatcher(inputPath, discovery::accepts, Duration.ofSeconds(settle)) : null;
+             PackChecker packChecker = newChecker()) {
+            checker = packChecker;
+            if (watcher != null) {
+                onShutdown(() -> stopWatching(watcher));
+            }
+            List<Path> packs = null;
+            if (discovery != null && shard == null && queuePath == null && !watch) {
+                // Packs are processed as found, by priority among the queued ones
+                List<CompletableFuture<CheckResult>> results = Collections.synchronizedList(new ArrayList<>());
+                discovery.discover(path -> {
+                    if (pending.test(path)) {
+                        PackCost cost = PackCost.estimate(path);
+                        results.add(checker.getEngine().submit(cost, schedule.priority(cost), this::checkPackWithResult));
+                    }
+                }).join();
+                logSkipped(unchanged, done);
+                CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+            } else {
+                packs = discovery != null ? discovery.list() : List.of(inputPath);
+                // Partition of all the packs, then estimated once, for the order and the memory governor
+                List<Path> candidates = shard != null ? shard.select(inputPath, packs) : packs;
+                List<PackCost> selected = estimate(candidates.parallelStream().filter(pending).collect(Collectors.toList()));
+                logSkipped(unchanged, done);
+                selected = schedule.order(selected);
+                if (queuePath != null) {
+                    processQueue(selected);
+                } else {
+                    CompletableFuture.allOf(selected.stream()
+                            .map(cost -> checker.getEngine().submit(cost, 0, this::checkPackWithResult))
+                            .toArray(CompletableFuture[]::new)).join();
+                }
+            }
+            logMetrics();
+            if (watcher != null) {
+                packs.forEach(watcher::handled);
+                if (journal != null) {
+                    // First batch is complete : the journal only tracks arrivals in flight from now on
+                    journal.compact();
+                }
+                watchFolder(watcher);
+            }
+            if (journal != null) {
+                journal.complete();
+            }
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+            if (manifest != null) {
+                manifest.save();
             }
-        } else {
-            this.checkPackWithResult(inputPath);
         }
         return 0;
     }
 
-    private void checkPackWithResult(Path inputPackPath) {
-        if (!inputPackPath.toString().endsWith(CONVERTED_SPC_ZIP)) {
-            log.info("Checking {} pack", inputPackPath.getFileName());
-            CheckResult result = checkPack(inputPackPath);
-            result.showResult();
-            log.info("------------------------");
+    private static List<PackCost> estimate(List<Path> packs) {
+        return packs.parallelStream().map(PackCost::estimate).collect(Collectors.toList());
+    }
+
+    /** Serve jobs on the warm engine, until stopped. */
+    private int serve() throws IOException, InterruptedException {
+        if (warmup) {
+            Warmup.run();
+        }
+        if (inputPath != null && !Files.isDirectory(inputPath)) {
+            log.error("The served input must be a folder : {}", inputPath);
+            return 1;
         }
+        Path spoolDir = outputPath != null ? outputPath : Files.createTempDirectory("spc-service");
+        try (PackChecker packChecker = newChecker()) {
+            // Ready before the first request
+            checker = packChecker;
+            try (JobService service = new JobService(new InetSocketAddress(bindAddress, servePort), serveCapacity, spoolDir,
+                    inputPath, serveMaxUpload * MB, ioThrottle,
+                    (packPath, outputDir, mode, onStart) -> packChecker.getEngine().submit(packPath, p -> {
+                        onStart.run();
+                        return checkPackWithResult(p, options(outputDir, mode));
+                    }))) {
+                CountDownLatch stopped = new CountDownLatch(1);
+                onShutdown(stopped::countDown);
+                stopped.await();
+            }
+        }
+        return 0;
     }
 
-    public CheckResult checkPack(Path inputPackPath) {
-        PackFormat format = PackFormat.fromPath(inputPackPath);
-        if (!PackFormat.ARCHIVE.equals(format)) {
-            return CheckResult.ko(inputPackPath, "Wrong extension, only check zip files");
+    /** Warm up, then compress a synthetic pack without FFmpeg : the classes of a real run are loaded. */
+    private int train() throws IOException, InterruptedException {
+        Warmup.run();
+        Path tempDir = Files.createTempDirectory("spc-warmup");
+        try (PackChecker packChecker = newChecker()) {
+            checker = packChecker;
+            CheckResult result = checkPackWithResult(Warmup.writeTrainingPack(tempDir.resolve("warmup.zip")),
+                    options(tempDir, CheckMode.of(true, true)));
+            return result.isFailed() ? 1 : 0;
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
         }
+    }
 
-        try {
-            StoryPackMetadata metadata = format.getReader().readMetadata(inputPackPath);
+    /** Process a single pack, from stdin or a file, to stdout. */
+    private int streamPack(PrintStream packOut) throws IOException, InterruptedException {
+        if (isStdio(inputPath) && outputPath != null && !isStdio(outputPath)) {
+            log.error("A pack read from stdin is written to stdout");
+            return 2;
+        }
+        if (!isStdio(inputPath) && !Files.isRegularFile(inputPath)) {
+            log.error("Only a single pack can be written to stdout");
+            return 2;
+        }
+        try (PackChecker packChecker = newChecker();
+             InputStream in = new BufferedInputStream(isStdio(inputPath) ? System.in
+                     : ioThrottle.wrap(Files.newInputStream(inputPath)), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(packOut)) {
+            String name = isStdio(inputPath) ? "stdin" : inputPath.getFileName().toString();
+            log.info("Checking {} pack", name);
+            CheckResult result = packChecker.checkStream(name, in, out, options(null, CheckMode.of(repair, compress)));
+            result.showResult();
+            return result.isFailed() ? 1 : 0;
+        }
+    }
 
-            if (metadata == null) {
-                return CheckResult.ko(inputPackPath, "No story.json found");
+    /** Sample each pack, then extrapolate the run. */
+    private int estimate() throws IOException, InterruptedException {
+        CheckMode mode = compress || !repair ? CheckMode.COMPRESS : CheckMode.REPAIR;
+        List<Path> packs = Files.isDirectory(inputPath)
+                ? new PackDiscovery(inputPath, recursive, includes, excludes, this::isPack, discoveryThreads).list()
+                : List.of(inputPath);
+        List<PackEstimate> estimates = new ArrayList<>();
+        int failing = 0;
+        // One pack at a time, not to skew timings
+        try (PackChecker packChecker = newChecker()) {
+            for (Path pack : packs) {
+                try {
+                    PackEstimate e = packChecker.estimate(pack, mode, estimateSamples);
+                    estimates.add(e);
+                    if (e.getFailedSamples() > 0) {
+                        failing++;
+                    }
+                    log.info("{} : {} assets ({} sampled{}), ~{} ms, {} -> ~{} ({})", pack.getFileName(), e.getAssetCount(),
+                            e.getSampleCount(), e.getFailedSamples() > 0 ? ", " + e.getFailedSamples() + " failed" : "",
+                            e.getConversionMillis(), readableByteSize(e.getFileSize()), readableByteSize(e.getEstimatedSize()),
+                            savings(e.getFileSize(), e.getEstimatedSize()));
+                } catch (IOException e) {
+                    failing++;
+                    log.error("{} : unreadable pack", pack.getFileName(), e);
+                }
             }
+        }
+        long fileSize = estimates.stream().mapToLong(PackEstimate::getFileSize).sum();
+        long estimatedSize = estimates.stream().mapToLong(PackEstimate::getEstimatedSize).sum();
+        long conversion = estimates.stream().mapToLong(PackEstimate::getConversionMillis).sum();
+        int assetParallelism = parallel ? assetThreads : 1;
+        log.info("Estimate for {} packs ({} likely to fail) : conversion time ~{} s, wall time ~{} s with {} jobs and {} asset threads, {} -> ~{} ({})",
+                packs.size(), failing, conversion / 1000, PackEstimate.wallMillis(estimates, jobs, assetParallelism) / 1000,
+                jobs, assetParallelism, readableByteSize(fileSize), readableByteSize(estimatedSize), savings(fileSize, estimatedSize));
+        return 0;
+    }
+
+    private static String savings(long size, long estimatedSize) {
+        return size > 0 ? String.format("%+.1f%%", 100.0 * (estimatedSize - size) / size) : "n/a";
+    }
+
+    /** Process the packs of a bundle, streamed from it, into an output bundle or folder. */
+    private int processBundle() throws IOException, InterruptedException {
+        CheckOptions options = options(null, CheckMode.of(repair, compress));
+        Path target = outputPath != null ? outputPath : inputPath.getParent();
+        // Packs read ahead of the engine : buffered in memory, or spooled when large
+        Semaphore readAhead = new Semaphore(jobs + 1);
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<CheckResult>> results = new ArrayList<>();
+        if (repair && !force && PackBundle.isBundleName(target) && Files.exists(target)) {
+            log.error("Target file already exists : {}", target);
+            return 2;
+        }
+        try (PackChecker packChecker = newChecker();
+             PackBundle.Output output = repair ? PackBundle.open(target, force, ioThrottle) : null) {
+            checker = packChecker;
+            MemoryGovernor governor = checker.getEngine().getGovernor();
+            PackBundle.read(inputPath, ioThrottle, (name, size, data) -> {
+                readAhead.acquire();
+                // Input, and output of a repaired pack, held in memory until processed
+                long reserved = governor.reservePack(PackBuffer.memorySize(size) * (output != null ? 2 : 1));
+                PackBuffer pack = new PackBuffer(size);
+                try (pack) {
+                    data.transferTo(pack);
+                } catch (IOException | RuntimeException e) {
+                    pack.discard();
+                    governor.releasePack(reserved);
+                    readAhead.release();
+                    throw e;
+                }
+                results.add(checker.getEngine().submit(PackCost.ofSize(Paths.get(name), pack.getSize()), 0, p -> {
+                    try {
+                        return checkBundled(name, pack, options, output);
+                    } finally {
+                        discard(name, pack);
+                        governor.releasePack(reserved);
+                        readAhead.release();
+                    }
+                }).whenComplete((r, ex) -> {
+                    if (ex != null || r.isFailed()) {
+                        failed.incrementAndGet();
+                    }
+                }));
+            });
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).exceptionally(ex -> null).join();
+            logMetrics();
+        }
+        log.info("{} packs in bundle, {} failed", results.size(), failed.get());
+        return failed.get() > 0 ? 1 : 0;
+    }
 
-            if (metadata.getThumbnail() == null) {
-                log.warn("No thumbnail found");
+    private CheckResult checkBundled(String name, PackBuffer pack, CheckOptions options, PackBundle.Output output) {
+        log.info("Checking {} pack", name);
+        // Output only kept when written to the bundle, and only filled by repaired packs
+        PackBuffer processed = output != null ? new PackBuffer(pack.getSize()) : null;
+        try {
+            CheckResult result;
+            try (InputStream is = pack.openStream()) {
+                result = checker.checkStream(name, is, processed, options, false);
+            }
+            if (processed != null) {
+                processed.close();
             }
+            result.showResult();
+            log.info("------------------------");
+            if (output != null && !result.isFailed()) {
+                // Unchanged packs are copied as is
+                output.write(name, result.getResult() == CheckResult.CheckResultEnum.OK ? pack : processed);
+            }
+            return result;
         } catch (IOException e) {
-            return CheckResult.ko(inputPackPath, e);
+            log.error("Unable to write {} pack", name, e);
+            return CheckResult.ko(Paths.get(name), e);
+        } finally {
+            if (processed != null) {
+                discard(name, processed);
+            }
         }
+    }
 
+    private static void discard(String name, PackBuffer pack) {
         try {
-            StoryPack pack = format.getReader().read(inputPackPath);
-            Path outputPackPath;
-            if (repair && !force) {
-                outputPackPath = Paths.get(outputPath.toString() + "/" + inputPackPath.getFileName().toString() + CONVERTED_SPC_ZIP);
-                if (Files.exists(outputPackPath)) {
-                    return CheckResult.ko(inputPackPath, "Target file already exists");
-                }
-            } else {
-                outputPackPath = inputPackPath;
-            }
+            pack.discard();
+        } catch (IOException e) {
+            log.warn("Unable to delete spooled {} pack", name, e);
+        }
+    }
+
+    private static boolean isStdio(Path path) {
+        return path != null && STDIO.equals(path.toString());
+    }
 
+    private PackChecker newChecker() {
+        return PackChecker.builder()
+                .packParallelism(jobs)
+                .assetParallelism(assetThreads)
+                .memoryBudget(memoryBudget * MB)
+                .maxInflight(maxInflight * MB)
+                .parallelAssets(parallel)
+                .failFast(failFast)
+                .assetTimeout(Duration.ofSeconds(assetTimeout))
+                .packTimeout(Duration.ofSeconds(packTimeout))
+                .progress(true)
+                .listener(this::stage)
+                .ioThrottle(ioThrottle)
+                .build();
+    }
+
+    private void logMetrics() {
+        checker.getEngine().getGovernor().logMetrics();
+        if (ioThrottle.isLimited()) {
+            log.info("I/O : {}", ioThrottle);
+        }
+    }
+
+    /** Not an output of the checker. */
+    private boolean isPack(Path path) {
+        String name = path.getFileName().toString();
+        return !name.endsWith(PackChecker.CONVERTED_SPC_ZIP) && !name.endsWith(PackChecker.PART);
+    }
+
+    private static void logSkipped(AtomicInteger unchanged, AtomicInteger done) {
+        if (unchanged.get() > 0) {
+            log.info("Skipping {} unchanged packs", unchanged.get());
+        }
+        if (done.get() > 0) {
+            log.info("Skipping {} packs already done by the interrupted run", done.get());
+        }
+    }
+
+    /** Process arrivals on the warm engine, until interrupted. */
+    private void watchFolder(PackWatcher watcher) throws InterruptedException {
+        // Until stopped : keep the manifest up to date
+        Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+        watcher.run(path -> {
+            CompletableFuture<?> result = checker.getEngine().submit(path, this::checkPackWithResult).thenRun(this::saveManifest);
+            inFlight.add(result);
+            result.whenComplete((r, e) -> inFlight.remove(result));
+            return result;
+        });
+        // Arrivals in flight are finished : the journal is complete
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+    }
+
+    private static void stopWatching(PackWatcher watcher) {
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            log.warn("Unable to stop watching", e);
+        }
+    }
+
+    /**
+     * Stop serving or watching on shutdown (SIGINT, SIGTERM), then wait until the run is over : the service, checker,
+     * journal and manifest are closed as at a normal end.
+     */
+    private void onShutdown(Runnable stop) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("Stopping");
+            stop.run();
             try {
-                if (recompress(pack)) {
-                    if (increaseVersion) {
-                        pack.setVersion((short) (pack.getVersion() + 1));
-                    }
-                    if (force) {
-                        outputPackPath.toFile().delete();
-                    }
-                    format.getWriter().write(pack, outputPackPath, true);
-                    return compress ? CheckResult.compress(outputPackPath, pack) : CheckResult.repair(outputPackPath, pack);
-                }
-            } catch (StoryTellerException e) {
-                // TODO Need to handle these errors
-                return CheckResult.ko(inputPackPath, e);
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        }, "spc-shutdown"));
+    }
 
-            return CheckResult.ok(inputPackPath, pack);
+    private void saveManifest() {
+        if (manifest == null) {
+            return;
+        }
+        try {
+            manifest.save();
         } catch (IOException e) {
-            return CheckResult.ko(inputPackPath, e);
-        }
-    }
-
-    public boolean recompress(StoryPack storyPack) {
-        // Image
-        boolean modification = processAssets(storyPack, MediaGroup.IMAGE, MediaAssetType.BMP, ThrowingFunction.unchecked(ia -> ImageProcessor.getProcessor(compress).apply(ia)));
-        // Audio
-        modification |= processAssets(storyPack, MediaGroup.AUDIO, MediaAssetType.MP3, ThrowingFunction.unchecked(aa -> AudioProcessor.getProcessor(repair, compress).apply(aa)));
-
-        return modification;
-    }
-
-    private boolean processAssets(StoryPack storyPack, MediaGroup mg, MediaAssetType targetType,
-                                  Function<MediaAsset, byte[]> processor) {
-        // Cache prepared assets bytes
-        Map<String, byte[]> assets = new ConcurrentHashMap<>();
-        List<MediaAsset> medias = storyPack.assets(mg == MediaGroup.IMAGE);
-        AtomicBoolean modification = new AtomicBoolean(false);
-
-        try (ProgressBar pb = new ProgressBarBuilder()
-                .setInitialMax(medias.size())
-                .setUpdateIntervalMillis(100)
-                .setTaskName("Converting " + mg)
-                .setMaxRenderedLength(125)
-                //.setConsumer(new DelegatingProgressBarConsumer(log::info))
-                .build()) {
-            var mediasStream = parallel ? medias.parallelStream() : medias.stream();
-            mediasStream.forEach(StoppingConsumer.stopped(a -> {
-                pb.setExtraMessage(a.getName()); // Set extra message to display at the end of the bar
-
-                String assetHash = a.findHash();
-                // Update data (converted if needed)
-                byte[] rawData = assets.computeIfAbsent(assetHash, s -> processor.apply(a));
-                if (!Arrays.equals(rawData, a.getRawData())) {
-                    a.setRawData(rawData);
-                    // force type
-                    a.changeType(targetType);
-                    modification.set(true);
+            log.warn("Unable to save manifest", e);
+        }
+    }
+
+    /** Claim packs in the shared queue until all of them are done, by this process or another one. */
+    private void processQueue(List<PackCost> packs) throws IOException, InterruptedException {
+        Path root = Files.isDirectory(inputPath) ? inputPath : inputPath.getParent();
+        try (LeaseQueue queue = new LeaseQueue(queuePath, root, Duration.ofSeconds(leaseTtl))) {
+            List<PackCost> pending = packs;
+            while (!(pending = pending.stream().filter(cost -> !queue.isDone(cost.getPath())).collect(Collectors.toList())).isEmpty()) {
+                List<CompletableFuture<CheckResult>> results = pending.stream()
+                        .map(cost -> checker.getEngine().submit(cost, 0, p -> queue.claim(p) ? checkClaimedPack(queue, p) : null))
+                        .collect(Collectors.toList());
+                CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+                if (results.stream().allMatch(r -> r.join() == null)) {
+                    // Held by other workers : wait for them, or for their leases to expire
+                    log.debug("Waiting for {} packs held by other workers", pending.size());
+                    Thread.sleep(queue.getPollInterval().toMillis());
                 }
+            }
+        }
+    }
 
-                pb.step();
-            }));
+    private CheckResult checkClaimedPack(LeaseQueue queue, Path inputPackPath) {
+        try {
+            CheckResult result = checkPackWithResult(inputPackPath);
+            queue.done(inputPackPath, result.getResult().name());
+            return result;
+        } catch (RuntimeException e) {
+            queue.release(inputPackPath);
+            throw e;
         }
-        // Clean cache
-        assets.clear();
+    }
 
-        return modification.get();
+    private CheckResult checkPackWithResult(Path inputPackPath) {
+        return checkPackWithResult(inputPackPath, options(outputDirOf(inputPackPath), CheckMode.of(repair, compress)));
+    }
+
+    /** Sub-folders of the input folder are mirrored in the output folder. */
+    private Path outputDirOf(Path inputPackPath) {
+        Path parent = inputPackPath.getParent();
+        if (parent == null || !parent.startsWith(inputPath)) {
+            return outputPath;
+        }
+        return outputPath.resolve(inputPath.relativize(parent));
+    }
+
+    private CheckResult checkPackWithResult(Path inputPackPath, CheckOptions options) {
+        log.info("Checking {} pack", inputPackPath.getFileName());
+        CheckResult result = checker.checkPack(inputPackPath, options);
+        result.showResult();
+        log.info("------------------------");
+        if (manifest != null) {
+            manifest.record(inputPackPath, options.fingerprint(), result.getResult());
+        }
+        if (journal != null) {
+            boolean failed = result.isFailed();
+            journal.append(failed ? BatchJournal.State.FAILED : BatchJournal.State.VERIFIED, inputPackPath, result.getPath());
+        }
+        return result;
+    }
+
+    private CheckOptions options(Path outputDir, CheckMode mode) {
+        return CheckOptions.builder().mode(mode).outputDir(outputDir).force(force).increaseVersion(increaseVersion).build();
+    }
+
+    private void stage(Path inputPackPath, Path outputPackPath, PackChecker.Stage stage) {
+        if (journal != null) {
+            journal.append(BatchJournal.State.valueOf(stage.name()), inputPackPath, outputPackPath);
+        }
     }
 
 }
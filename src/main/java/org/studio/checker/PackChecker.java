@@ -0,0 +1,473 @@
+package org.studio.checker;
+
+import lombok.extern.slf4j.Slf4j;
+import me.tongfei.progressbar.DelegatingProgressBarConsumer;
+import me.tongfei.progressbar.ProgressBar;
+import me.tongfei.progressbar.ProgressBarBuilder;
+import net.bramp.ffmpeg.FFmpeg;
+import org.studio.checker.engine.Cancellation;
+import org.studio.checker.engine.MemoryGovernor;
+import org.studio.checker.engine.PackEngine;
+import org.studio.checker.engine.PackEstimate;
+import org.studio.checker.pipeline.ByteBudget;
+import org.studio.checker.pipeline.PackPipeline;
+import org.studio.checker.processor.AudioProcessor;
+import org.studio.checker.processor.ImageProcessor;
+import studio.core.v1.exception.ConversionTimeoutException;
+import studio.core.v1.exception.StoryTellerException;
+import studio.core.v1.model.StageNode;
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.model.asset.MediaAsset;
+import studio.core.v1.model.metadata.StoryPackMetadata;
+import studio.core.v1.service.AssetReader;
+import studio.core.v1.service.PackFormat;
+import studio.core.v1.service.PackOutput;
+import studio.core.v1.service.PackSession;
+import studio.core.v1.service.StoryPackReader;
+import studio.core.v1.service.archive.ArchiveStoryPackReader;
+import studio.core.v1.service.archive.ArchiveStoryPackWriter;
+import studio.core.v1.service.archive.ArchiveStreamReader;
+import studio.core.v1.utils.io.IoThrottle;
+import studio.core.v1.utils.stream.ThrowingFunction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Check, repair and compress packs.
+ * <p>
+ * A checker holds no state per pack : it can be shared by many threads, each call having its own
+ * {@link CheckOptions}. Packs are processed by its {@link PackEngine}, on the pack executor given to the
+ * {@link Builder} (or its own one).
+ *
+ * <pre>
+ * try (PackChecker checker = PackChecker.builder().packParallelism(4).build()) {
+ *     CheckResult result = checker.check(pack, CheckOptions.builder().mode(CheckMode.COMPRESS).build()).join();
+ * }
+ * </pre>
+ */
+@Slf4j
+public class PackChecker implements AutoCloseable {
+
+    public static final String CONVERTED_SPC_ZIP = "_converted_spc.zip";
+    public static final String PART = ".part";
+
+    /** Steps of a pack processing, before its result. */
+    public enum Stage {
+        /** Processing started. */
+        STARTED,
+        /** Assets converted, output written aside. */
+        CONVERTED,
+        /** Output moved into place. */
+        WRITTEN
+    }
+
+    /** Pack processing progress. */
+    @FunctionalInterface
+    public interface Listener {
+        void stage(Path inputPackPath, Path outputPackPath, Stage stage);
+    }
+
+    private final PackEngine engine;
+    private final FFmpegCreator ffmpegCreator;
+    private final long maxInflight;
+    private final boolean parallelAssets;
+    private final boolean failFast;
+    private final Duration assetTimeout;
+    private final Duration packTimeout;
+    private final boolean progress;
+    private final Listener listener;
+    private final IoThrottle ioThrottle;
+    private final ArchiveStoryPackReader reader;
+    private final ArchiveStoryPackWriter writer;
+
+    private PackChecker(Builder builder) {
+        this.engine = new PackEngine(builder.executor, builder.packParallelism, builder.assetParallelism,
+                MemoryGovernor.create(builder.memoryBudget));
+        this.ffmpegCreator = new FFmpegCreator(builder.ffmpegPath);
+        this.maxInflight = builder.maxInflight;
+        this.parallelAssets = builder.parallelAssets;
+        this.failFast = builder.failFast;
+        this.assetTimeout = builder.assetTimeout;
+        this.packTimeout = builder.packTimeout;
+        this.progress = builder.progress;
+        this.listener = builder.listener;
+        this.ioThrottle = builder.ioThrottle;
+        this.reader = new ArchiveStoryPackReader(ioThrottle);
+        this.writer = new ArchiveStoryPackWriter(ioThrottle);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Engine, for callers scheduling packs by themselves. */
+    PackEngine getEngine() {
+        return engine;
+    }
+
+    /** I/O limits of the packs read and written. */
+    public IoThrottle getIoThrottle() {
+        return ioThrottle;
+    }
+
+    /** Queue a pack. It starts once admitted by the memory governor. */
+    public CompletableFuture<CheckResult> check(Path inputPackPath, CheckOptions options) {
+        return engine.submit(inputPackPath, p -> checkPack(p, options));
+    }
+
+    /** Process a pack now, in the calling thread. */
+    public CheckResult checkPack(Path inputPackPath, CheckOptions options) {
+        try {
+            return doCheckPack(inputPackPath, options);
+        } catch (StoryTellerException e) {
+            return ConversionTimeoutException.isTimeout(e) ? CheckResult.timeout(inputPackPath, e) : CheckResult.ko(inputPackPath, e);
+        }
+    }
+
+    private CheckResult doCheckPack(Path inputPackPath, CheckOptions options) {
+        PackFormat format = PackFormat.fromPath(inputPackPath);
+        if (!PackFormat.ARCHIVE.equals(format)) {
+            return CheckResult.ko(inputPackPath, "Wrong extension, only check zip files");
+        }
+
+        // Opened once, for metadata, structure and assets
+        try (PackSession session = reader.open(inputPackPath)) {
+            StoryPackMetadata metadata = session.getMetadata();
+
+            if (metadata == null) {
+                return CheckResult.ko(inputPackPath, "No story.json found");
+            }
+
+            if (metadata.getThumbnail() == null) {
+                log.warn("No thumbnail found");
+            }
+            return checkSession(inputPackPath, session, options);
+        } catch (IOException e) {
+            return CheckResult.ko(inputPackPath, e);
+        }
+    }
+
+    /** Process an opened pack, closing it once read. */
+    private CheckResult checkSession(Path inputPackPath, PackSession session, CheckOptions options) {
+        CheckMode mode = options.getMode();
+        Path outputPackPath;
+        if (mode.isRepair() && !options.isForce()) {
+            Path outputDir = options.getOutputDir() != null ? options.getOutputDir() : inputPackPath.toAbsolutePath().getParent();
+            outputPackPath = outputDir.resolve(inputPackPath.getFileName().toString() + CONVERTED_SPC_ZIP);
+            if (Files.exists(outputPackPath)) {
+                return CheckResult.ko(inputPackPath, "Target file already exists");
+            }
+            try {
+                Files.createDirectories(outputDir);
+            } catch (IOException e) {
+                return CheckResult.ko(inputPackPath, e);
+            }
+        } else {
+            outputPackPath = inputPackPath;
+        }
+        // Output is written aside, and only moved once complete
+        Path partPackPath = outputPackPath.resolveSibling(outputPackPath.getFileName() + PART);
+        listener.stage(inputPackPath, outputPackPath, Stage.STARTED);
+
+        // Pack scope, with its deadline
+        Cancellation packScope = new Cancellation();
+        Future<?> deadline = engine.getWatchdog().watch(packScope, packTimeout, "Pack " + inputPackPath.getFileName());
+        try {
+            StoryPack pack = session.getStructure();
+            boolean modified;
+            // Source is closed before its output may replace it
+            try (session; PackOutput output = mode.isRepair() ? writer.create(partPackPath) : null) {
+                modified = recompress(pack, session, output, packScope, mode);
+                if (modified && output != null) {
+                    if (options.isIncreaseVersion()) {
+                        pack.setVersion((short) (pack.getVersion() + 1));
+                    }
+                    output.finish(pack, true);
+                    listener.stage(inputPackPath, outputPackPath, Stage.CONVERTED);
+                }
+            }
+
+            if (modified && mode.isRepair()) {
+                // Checked before it replaces anything : an invalid output is discarded
+                if (!isValidOutput(reader, partPackPath, pack)) {
+                    return CheckResult.ko(inputPackPath, "Written pack is unreadable");
+                }
+                Files.move(partPackPath, outputPackPath, StandardCopyOption.REPLACE_EXISTING);
+                listener.stage(inputPackPath, outputPackPath, Stage.WRITTEN);
+                return mode.isCompress() ? CheckResult.compress(outputPackPath, pack) : CheckResult.repair(outputPackPath, pack);
+            }
+            return CheckResult.ok(inputPackPath, pack);
+        } catch (IOException e) {
+            return CheckResult.ko(inputPackPath, e);
+        } finally {
+            deadline.cancel(false);
+            try {
+                Files.deleteIfExists(partPackPath);
+            } catch (IOException e) {
+                log.warn("Unable to delete {}", partPackPath, e);
+            }
+        }
+    }
+
+    /**
+     * Process a zip pack read from a stream, in the calling thread, and write it to another stream : in check mode the
+     * pack is written unchanged. Output stream is left open.
+     *
+     * @param name pack name, for the result
+     */
+    public CheckResult checkStream(String name, InputStream inputStream, OutputStream outputStream, CheckOptions options) {
+        return checkStream(name, inputStream, outputStream, options, true);
+    }
+
+    /**
+     * Process a zip pack read from a stream, in the calling thread, and write it to another stream. Output stream is
+     * left open.
+     *
+     * @param name         pack name, for the result
+     * @param outputStream output, may be null when nothing is passed through in check mode
+     * @param passThrough  write unchanged packs as read, and all packs in check mode. Else only repaired packs are
+     *                     written : the caller keeps the source of the others, nothing is re-zipped in check mode
+     */
+    public CheckResult checkStream(String name, InputStream inputStream, OutputStream outputStream, CheckOptions options,
+                                   boolean passThrough) {
+        Path inputPackPath = Paths.get(name);
+        Cancellation packScope = new Cancellation();
+        Future<?> deadline = engine.getWatchdog().watch(packScope, packTimeout, "Pack " + name);
+        try (ArchiveStreamReader source = ArchiveStreamReader.read(inputStream)) {
+            StoryPack pack = source.readStructure();
+            if (pack == null) {
+                return CheckResult.ko(inputPackPath, "No story.json found");
+            }
+            if (pack.getEnriched() == null || pack.getEnriched().getThumbnail() == null) {
+                log.warn("No thumbnail found");
+            }
+            CheckMode mode = options.getMode();
+            boolean modified;
+            // Check only : no output at all
+            boolean written = mode.isRepair() || passThrough;
+            try (PackOutput output = written ? writer.create(outputStream) : null) {
+                modified = recompress(pack, source, mode.isRepair() ? output : null, packScope, mode);
+                if (modified && mode.isRepair()) {
+                    if (options.isIncreaseVersion()) {
+                        pack.setVersion((short) (pack.getVersion() + 1));
+                    }
+                    output.finish(pack, true);
+                } else if (passThrough) {
+                    // Pass the source pack through, as read
+                    StoryPack original = source.readStructure();
+                    for (String assetName : assetNames(original)) {
+                        output.writeAsset(assetName, source.read(assetName));
+                    }
+                    output.finish(original, true);
+                }
+            }
+            if (modified && mode.isRepair()) {
+                return mode.isCompress() ? CheckResult.compress(inputPackPath, pack) : CheckResult.repair(inputPackPath, pack);
+            }
+            return CheckResult.ok(inputPackPath, pack);
+        } catch (IOException e) {
+            return CheckResult.ko(inputPackPath, e);
+        } catch (StoryTellerException e) {
+            return ConversionTimeoutException.isTimeout(e) ? CheckResult.timeout(inputPackPath, e) : CheckResult.ko(inputPackPath, e);
+        } finally {
+            deadline.cancel(false);
+        }
+    }
+
+    private static List<String> assetNames(StoryPack pack) {
+        return pack.getStageNodes().stream().flatMap(StageNode::assets).map(MediaAsset::getName).distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Estimate the processing of a pack from a few sampled assets per type, in the calling thread. Nothing is written.
+     *
+     * @param samples assets sampled per type
+     */
+    public PackEstimate estimate(Path inputPackPath, CheckMode mode, int samples) throws IOException {
+        return PackEstimate.sample(inputPackPath, samples, new ImageProcessor(mode.isCompress()),
+                new AudioProcessor(mode.isRepair(), mode.isCompress(), ffmpegCreator, engine.getAssetPool(), ioThrottle));
+    }
+
+    /**
+     * Written pack is readable : its structure parses, and every asset it references is present.
+     *
+     * @param throttle I/O limits of the read
+     */
+    public static boolean isValidOutput(Path packPath, IoThrottle throttle) {
+        return isValidOutput(new ArchiveStoryPackReader(throttle), packPath, null);
+    }
+
+    /**
+     * Written pack is readable : its descriptor is read up to its metadata, and every asset of the pack is present.
+     *
+     * @param written pack the output was written from, or null to parse its structure from the output
+     */
+    static boolean isValidOutput(StoryPackReader reader, Path packPath, StoryPack written) {
+        try (PackSession session = reader.open(packPath)) {
+            StoryPackMetadata metadata = session.getMetadata();
+            if (metadata == null) {
+                log.debug("Invalid output {} : no story.json", packPath);
+                return false;
+            }
+            StoryPack pack = written != null ? written : session.getStructure();
+            if (!pack.getUuid().equals(metadata.getUuid())) {
+                log.debug("Invalid output {} : uuid {} instead of {}", packPath, metadata.getUuid(), pack.getUuid());
+                return false;
+            }
+            for (String assetName : assetNames(pack)) {
+                // Missing entry throws
+                session.size(assetName);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Invalid output {}", packPath, e);
+            return false;
+        }
+    }
+
+    private boolean recompress(StoryPack storyPack, AssetReader source, PackOutput output, Cancellation packScope, CheckMode mode) throws IOException {
+        ProgressBarBuilder pbb = new ProgressBarBuilder()
+                .setInitialMax(0)
+                .setUpdateIntervalMillis(100)
+                .setTaskName("Converting assets")
+                .setMaxRenderedLength(125);
+        if (!progress || engine.isConcurrent()) {
+            // Many packs in flight : don't mix their progress bars
+            pbb.setConsumer(new DelegatingProgressBarConsumer(s -> {}));
+        }
+        try (ProgressBar pb = pbb.build()) {
+            // Convert in the pool shared by all packs
+            Executor convertExecutor = parallelAssets ? engine.getAssetPool() : Runnable::run;
+            Executor audioExecutor = parallelAssets ? engine.getBlockingPool() : Runnable::run;
+            ByteBudget budget = new ByteBudget(maxInflight, engine.getGovernor().getAssetBudget());
+            PackPipeline pipeline = new PackPipeline(convertExecutor, audioExecutor, budget, pb, packScope, failFast,
+                    engine.getWatchdog(), assetTimeout);
+            ImageProcessor imageProcessor = new ImageProcessor(mode.isCompress());
+            AudioProcessor audioProcessor = new AudioProcessor(mode.isRepair(), mode.isCompress(), ffmpegCreator,
+                    engine.getAssetPool(), ioThrottle);
+            return pipeline.run(storyPack, source, output,
+                    ThrowingFunction.unchecked(imageProcessor::apply),
+                    ThrowingFunction.unchecked(audioProcessor::apply));
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        engine.close();
+    }
+
+    public static class Builder {
+        private static final long MB = 1024 * 1024L;
+
+        private Executor executor;
+        private int packParallelism = 1;
+        private int assetParallelism = Runtime.getRuntime().availableProcessors();
+        private long memoryBudget;
+        private long maxInflight = 64 * MB;
+        private boolean parallelAssets = true;
+        private boolean failFast;
+        private Duration assetTimeout = Duration.ZERO;
+        private Duration packTimeout = Duration.ZERO;
+        private boolean progress;
+        private String ffmpegPath = FFmpeg.DEFAULT_PATH;
+        private Listener listener = (input, output, stage) -> {};
+        private IoThrottle ioThrottle = new IoThrottle(0, 0);
+
+        private Builder() {
+        }
+
+        /** Executor of the packs, not shut down with the checker (default: own threads). */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /** Packs processed at once (default: 1). */
+        public Builder packParallelism(int packParallelism) {
+            this.packParallelism = packParallelism;
+            return this;
+        }
+
+        /** Size of the assets pool shared by all packs (default: number of processors). */
+        public Builder assetParallelism(int assetParallelism) {
+            this.assetParallelism = assetParallelism;
+            return this;
+        }
+
+        /** Global memory budget in bytes (default: detected from max heap and container limit). */
+        public Builder memoryBudget(long memoryBudget) {
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /** Maximum assets working set in flight per pack, in bytes (default: 64 MB). */
+        public Builder maxInflight(long maxInflight) {
+            this.maxInflight = maxInflight;
+            return this;
+        }
+
+        /** Convert the assets of a pack in parallel (default: true). */
+        public Builder parallelAssets(boolean parallelAssets) {
+            this.parallelAssets = parallelAssets;
+            return this;
+        }
+
+        /** Stop a pack on its first asset failure (default: false). */
+        public Builder failFast(boolean failFast) {
+            this.failFast = failFast;
+            return this;
+        }
+
+        /** Maximum conversion time of an asset (default: none). */
+        public Builder assetTimeout(Duration assetTimeout) {
+            this.assetTimeout = assetTimeout;
+            return this;
+        }
+
+        /** Maximum processing time of a pack (default: none). */
+        public Builder packTimeout(Duration packTimeout) {
+            this.packTimeout = packTimeout;
+            return this;
+        }
+
+        /** Render a progress bar on the console, when a single pack is in flight (default: false). */
+        public Builder progress(boolean progress) {
+            this.progress = progress;
+            return this;
+        }
+
+        /** FFmpeg binary (default: from PATH or FFMPEG env). */
+        public Builder ffmpegPath(String ffmpegPath) {
+            this.ffmpegPath = ffmpegPath;
+            return this;
+        }
+
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /** I/O limits of the packs read and written, shared with the caller (default: none). */
+        public Builder ioThrottle(IoThrottle ioThrottle) {
+            this.ioThrottle = ioThrottle;
+            return this;
+        }
+
+        public PackChecker build() {
+            return new PackChecker(this);
+        }
+    }
+}
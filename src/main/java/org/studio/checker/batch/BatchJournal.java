@@ -0,0 +1,212 @@
+package org.studio.checker.batch;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Append-only journal of packs state transitions, to resume an interrupted batch.
+ * <p>
+ * Each line is flushed to disk. On restart, the journal is replayed : verified packs are skipped, failed packs are
+ * retried (unless told otherwise), outputs of unfinished packs are completed when valid or discarded. The journal is
+ * deleted once a batch is complete.
+ * <p>
+ * A journal kept in use once its batch is complete (watch mode) is compacted : finished packs are forgotten, and the
+ * journal is rewritten with the packs in flight whenever it grows beyond {@link #COMPACT_SIZE}.
+ */
+@Slf4j
+public class BatchJournal implements AutoCloseable {
+
+    public static final String JOURNAL_FILE = ".spc-journal";
+    private static final String JOURNAL_EXTENSION = ".log";
+
+    /** Journal size beyond which a compacting journal is rewritten. */
+    public static final long COMPACT_SIZE = 1024 * 1024L;
+
+    private static final String SEPARATOR = "\t";
+    private static final String PART = ".part";
+
+    public enum State {
+        /** Processing started. */
+        STARTED,
+        /** Assets converted, output written aside. */
+        CONVERTED,
+        /** Output moved into place. */
+        WRITTEN,
+        /** Output checked (or no output needed) : done. */
+        VERIFIED,
+        /** Pack failed : done, but retried on resume unless told otherwise. */
+        FAILED;
+
+        boolean isDone() {
+            return this == VERIFIED || this == FAILED;
+        }
+    }
+
+    private static final class Record {
+        private State state;
+        private Path output;
+    }
+
+    private final Path journalPath;
+    private FileChannel channel;
+    private final Map<Path, Record> replayed;
+    private final Set<Path> done = new HashSet<>();
+    /** Last line of the packs in flight, for compaction. */
+    private final Map<Path, String> inFlight = new LinkedHashMap<>();
+    private boolean compacting;
+    @Getter
+    private final boolean resumed;
+
+    private BatchJournal(Path journalPath, Map<Path, Record> replayed) throws IOException {
+        this.journalPath = journalPath;
+        this.replayed = replayed;
+        this.resumed = !replayed.isEmpty();
+        this.channel = open(journalPath);
+    }
+
+    private static FileChannel open(Path journalPath) throws IOException {
+        return FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Open the journal of the output directory, replaying the interrupted batch if any.
+     *
+     * @param suffix journal name suffix, when many batches share the output directory
+     */
+    public static BatchJournal open(Path outputDir, String suffix) throws IOException {
+        Path journalPath = outputDir.resolve(JOURNAL_FILE + suffix + JOURNAL_EXTENSION);
+        Map<Path, Record> replayed = new HashMap<>();
+        if (Files.exists(journalPath)) {
+            List<String> lines = Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] fields = line.split(SEPARATOR);
+                // Last line may be truncated by the crash
+                if (fields.length != 4) {
+                    continue;
+                }
+                Record r = replayed.computeIfAbsent(Paths.get(fields[2]), k -> new Record());
+                r.state = State.valueOf(fields[0]);
+                r.output = Paths.get(fields[3]);
+            }
+            log.debug("Replayed {} packs from journal {}", replayed.size(), journalPath);
+        }
+        return new BatchJournal(journalPath, replayed);
+    }
+
+    /**
+     * Recover the interrupted batch.
+     *
+     * @param validOutput test of a written output
+     * @param retryFailed process again the packs that failed (e.g. on a timeout), instead of skipping them
+     */
+    public void recover(Predicate<Path> validOutput, boolean retryFailed) throws IOException {
+        for (Map.Entry<Path, Record> e : replayed.entrySet()) {
+            Path input = e.getKey();
+            Record r = e.getValue();
+            if (r.state == State.FAILED && retryFailed) {
+                // Nothing was written : processed again from scratch
+                continue;
+            }
+            if (r.state.isDone()) {
+                done.add(input);
+                continue;
+            }
+            // Partial output is discarded
+            Files.deleteIfExists(r.output.resolveSibling(r.output.getFileName() + PART));
+            boolean inPlace = r.output.equals(input);
+            // Output moved (atomically) before the crash : complete it if valid. In place, only the journal tells.
+            boolean written = inPlace ? r.state == State.WRITTEN : Files.exists(r.output);
+            if (written && validOutput.test(r.output)) {
+                log.info("Completing {} from interrupted run", r.output.getFileName());
+                append(State.VERIFIED, input, r.output);
+                done.add(input);
+            } else if (!inPlace && Files.deleteIfExists(r.output)) {
+                log.info("Discarding {} from interrupted run", r.output.getFileName());
+            }
+        }
+    }
+
+    /** Pack already done by the interrupted batch. */
+    public boolean isDone(Path input) {
+        return done.contains(key(input));
+    }
+
+    /** Record a state transition, flushed to disk. */
+    public synchronized void append(State state, Path input, Path output) {
+        String line = String.join(SEPARATOR, state.name(), String.valueOf(System.currentTimeMillis()),
+                key(input).toString(), key(output).toString()) + "\n";
+        if (state.isDone()) {
+            inFlight.remove(key(input));
+        } else {
+            inFlight.put(key(input), line);
+        }
+        try {
+            channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            channel.force(false);
+            if (compacting && state.isDone() && channel.size() > COMPACT_SIZE) {
+                rewrite();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write journal {}", journalPath, e);
+        }
+    }
+
+    /**
+     * Batch complete, but the journal stays in use for the next packs (watch mode) : finished packs are forgotten, and
+     * from now on the journal is compacted as it grows.
+     */
+    public synchronized void compact() throws IOException {
+        compacting = true;
+        rewrite();
+    }
+
+    /** Replace the journal (atomically) by the last lines of the packs in flight. */
+    private void rewrite() throws IOException {
+        Path tmp = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String line : inFlight.values()) {
+                out.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(tmp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(journalPath);
+        log.debug("Compacted journal {} to {} packs in flight", journalPath, inFlight.size());
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /** Batch complete : the journal is not needed anymore. */
+    public void complete() throws IOException {
+        close();
+        Files.deleteIfExists(journalPath);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.close();
+        }
+    }
+}
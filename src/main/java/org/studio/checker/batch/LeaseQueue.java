@@ -0,0 +1,223 @@
+package org.studio.checker.batch;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import studio.core.v1.utils.security.SecurityUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work queue shared by many processes through a directory, on a shared filesystem.
+ * <p>
+ * A pack is claimed by atomically creating its lease file. The owner renews its leases (modification time) while
+ * processing; a lease not renewed for its time to live belongs to a dead worker and is reclaimed by another one,
+ * through an atomic rename so only one of them wins. A lease is only renewed or released by the worker it names.
+ * A processed pack gets a done marker.
+ */
+@Slf4j
+public class LeaseQueue implements AutoCloseable {
+
+    private static final String LEASE = ".lease";
+    private static final String DONE = ".done";
+    private static final String STALE = ".stale";
+
+    private final Path queueDir;
+    private final Path root;
+    private final Duration ttl;
+    @Getter
+    private final String workerId;
+    /** Held leases, by pack. */
+    private final Map<Path, Path> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "spc-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param queueDir shared queue directory
+     * @param root     input folder, packs are identified relatively to it
+     * @param ttl      lease time to live
+     */
+    public LeaseQueue(Path queueDir, Path root, Duration ttl) throws IOException {
+        this(queueDir, root, ttl, ManagementFactory.getRuntimeMXBean().getName());
+    }
+
+    LeaseQueue(Path queueDir, Path root, Duration ttl, String workerId) throws IOException {
+        this.queueDir = Files.createDirectories(queueDir);
+        this.root = root;
+        this.ttl = ttl;
+        this.workerId = workerId;
+        long period = Math.max(1, ttl.toMillis() / 3);
+        heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+        log.info("Worker {} joined queue {}", workerId, queueDir);
+    }
+
+    /** Interval between two passes over packs held by others. */
+    public Duration getPollInterval() {
+        return ttl.dividedBy(3);
+    }
+
+    public boolean isDone(Path pack) {
+        return Files.exists(file(pack, DONE));
+    }
+
+    /** Try to claim the pack. */
+    public boolean claim(Path pack) {
+        if (isDone(pack)) {
+            return false;
+        }
+        Path lease = file(pack, LEASE);
+        try {
+            create(lease);
+        } catch (FileAlreadyExistsException e) {
+            if (!reclaim(pack, lease)) {
+                return false;
+            }
+        } catch (IOException e) {
+            log.warn("Unable to claim {}", pack, e);
+            return false;
+        }
+        // Done in between
+        if (isDone(pack)) {
+            release(pack);
+            return false;
+        }
+        leases.put(pack, lease);
+        return true;
+    }
+
+    private boolean reclaim(Path pack, Path lease) {
+        try {
+            String owner = owner(lease);
+            if (owner == null || !isExpired(lease)) {
+                return false;
+            }
+            // Only one worker renames the expired lease
+            Path stale = lease.resolveSibling(lease.getFileName() + "." + SecurityUtils.sha1Hex(workerId) + STALE);
+            Files.move(lease, stale, StandardCopyOption.ATOMIC_MOVE);
+            // Renewed, or reclaimed by another worker, since it was read : not the expired lease, give it back
+            if (!owner.equals(owner(stale)) || !isExpired(stale)) {
+                restore(stale, lease);
+                return false;
+            }
+            log.info("Reclaiming {} from expired lease of {}", pack.getFileName(), owner);
+            Files.delete(stale);
+            create(lease);
+            return true;
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            // Released, or reclaimed by another worker
+            return false;
+        } catch (IOException e) {
+            log.warn("Unable to reclaim {}", pack, e);
+            return false;
+        }
+    }
+
+    private boolean isExpired(Path lease) throws IOException {
+        FileTime renewed = Files.getLastModifiedTime(lease);
+        return System.currentTimeMillis() - renewed.toMillis() >= ttl.toMillis();
+    }
+
+    /** Put back a lease renamed by mistake, unless a new one was created meanwhile. */
+    private void restore(Path stale, Path lease) throws IOException {
+        try {
+            Files.createLink(lease, stale);
+        } catch (UnsupportedOperationException e) {
+            Files.move(stale, lease);
+            return;
+        } catch (FileAlreadyExistsException e) {
+            log.warn("Lease {} replaced while given back", lease.getFileName());
+        }
+        Files.delete(stale);
+    }
+
+    /** Worker named in the lease, null if none. */
+    private static String owner(Path lease) throws IOException {
+        try {
+            return Files.readString(lease).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private boolean isOwned(Path lease) throws IOException {
+        return workerId.equals(owner(lease));
+    }
+
+    private void create(Path lease) throws IOException {
+        // Written through the created file, even if renamed meanwhile
+        try (OutputStream os = Files.newOutputStream(lease, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            os.write(workerId.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Mark the claimed pack as done, and release it. */
+    public void done(Path pack, String result) {
+        try {
+            Files.write(file(pack, DONE), (workerId + " " + result).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Unable to mark {} as done", pack, e);
+        }
+        release(pack);
+    }
+
+    /** Release the claimed pack, for another worker. */
+    public void release(Path pack) {
+        leases.remove(pack);
+        Path lease = file(pack, LEASE);
+        try {
+            // Reclaimed by another worker, after this one stalled past the time to live
+            if (isOwned(lease)) {
+                Files.delete(lease);
+            }
+        } catch (NoSuchFileException e) {
+            // Already reclaimed and released
+        } catch (IOException e) {
+            log.warn("Unable to release {}", pack, e);
+        }
+    }
+
+    void renew() {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        leases.forEach((pack, lease) -> {
+            try {
+                if (isOwned(lease)) {
+                    Files.setLastModifiedTime(lease, now);
+                } else {
+                    log.warn("Lease of {} lost to another worker", pack.getFileName());
+                    leases.remove(pack);
+                }
+            } catch (IOException e) {
+                log.warn("Lease of {} lost", pack.getFileName(), e);
+            }
+        });
+    }
+
+    /** Queue file of a pack : hash of its path relative to the input folder. */
+    private Path file(Path pack, String extension) {
+        return queueDir.resolve(Shard.key(root, pack) + extension);
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+        leases.keySet().forEach(this::release);
+    }
+}
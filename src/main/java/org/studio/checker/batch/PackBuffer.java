@@ -0,0 +1,113 @@
+package org.studio.checker.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Pack of a bundle, buffered for the engine : in memory up to a threshold, then in a temporary file.
+ * <p>
+ * Written once, then read as many times as needed, until discarded.
+ */
+public final class PackBuffer extends OutputStream {
+
+    /** Bytes kept in memory, per pack. */
+    public static final int MEMORY_THRESHOLD = 32 * 1024 * 1024;
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private final int threshold;
+    private final int initialSize;
+    // Allocated on first write : an output left empty holds no memory
+    private byte[] buffer = new byte[0];
+    private int count;
+    private Path file;
+    private OutputStream fileStream;
+    private long size;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * @param expectedSize size of the pack, or -1 if unknown
+     */
+    public PackBuffer(long expectedSize) {
+        this(expectedSize, MEMORY_THRESHOLD);
+    }
+
+    PackBuffer(long expectedSize, int threshold) {
+        this.threshold = threshold;
+        this.initialSize = (int) (expectedSize >= 0 ? Math.min(expectedSize, threshold) : Math.min(INITIAL_SIZE, threshold));
+    }
+
+    /** Heap held by a pack of this size (-1 if unknown) while buffered. */
+    public static long memorySize(long expectedSize) {
+        return expectedSize >= 0 ? Math.min(expectedSize, MEMORY_THRESHOLD) : MEMORY_THRESHOLD;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        crc.update(b, off, len);
+        size += len;
+        if (fileStream == null && count + (long) len <= threshold) {
+            if (count + len > buffer.length) {
+                long capacity = Math.max(count + (long) len, Math.max(initialSize, 2L * buffer.length));
+                buffer = Arrays.copyOf(buffer, (int) Math.min(threshold, capacity));
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+            return;
+        }
+        if (fileStream == null) {
+            // Too big for memory : spooled from now on
+            file = Files.createTempFile("spc-bundle", ".zip");
+            fileStream = new BufferedOutputStream(Files.newOutputStream(file));
+            fileStream.write(buffer, 0, count);
+            buffer = null;
+            count = 0;
+        }
+        fileStream.write(b, off, len);
+    }
+
+    /** End of writing. */
+    @Override
+    public void close() throws IOException {
+        if (fileStream != null) {
+            fileStream.close();
+        }
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getCrc() {
+        return crc.getValue();
+    }
+
+    public boolean isSpooled() {
+        return file != null;
+    }
+
+    /** Read the buffered pack, without copying it. */
+    public InputStream openStream() throws IOException {
+        return file != null ? Files.newInputStream(file) : new ByteArrayInputStream(buffer, 0, count);
+    }
+
+    /** Free the memory, delete the temporary file. */
+    public void discard() throws IOException {
+        buffer = null;
+        close();
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package org.studio.checker.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import studio.core.v1.utils.io.IoThrottle;
+import studio.core.v1.utils.io.TarInputStream;
+import studio.core.v1.utils.io.TarOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.STORY_JSON;
+
+/**
+ * Bundle of packs, as delivered by vendors : a tar (optionally gzipped) or a zip of pack zips.
+ * <p>
+ * Inner packs are streamed from the bundle one by one, and their outputs written to another bundle or a folder,
+ * without extracting the bundle.
+ */
+@Slf4j
+public final class PackBundle {
+
+    private static final String ZIP = ".zip";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Inner pack of a bundle. */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * @param name pack path inside the bundle
+         * @param size pack size, or -1 if unknown
+         * @param data pack content, valid until return only
+         */
+        void accept(String name, long size, InputStream data) throws IOException, InterruptedException;
+    }
+
+    /** Output of the packs of a bundle. Thread-safe. */
+    public interface Output extends Closeable {
+        void write(String name, PackBuffer pack) throws IOException;
+    }
+
+    private PackBundle() {
+        throw new IllegalArgumentException("Utility class");
+    }
+
+    private static boolean isTar(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".tar") || isGzip(path);
+    }
+
+    private static boolean isGzip(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /** A tar, or a zip of packs (zip entries, but no story descriptor). */
+    public static boolean isBundle(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        if (isTar(path)) {
+            return true;
+        }
+        if (!path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(ZIP)) {
+            return false;
+        }
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            return zip.getEntry(STORY_JSON) == null && Collections.list(zip.entries()).stream()
+                    .anyMatch(e -> !e.isDirectory() && e.getName().toLowerCase(Locale.ROOT).endsWith(ZIP));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Target of the outputs is a bundle, not a folder. */
+    public static boolean isBundleName(Path path) {
+        return isTar(path) || path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(ZIP);
+    }
+
+    /**
+     * Stream the inner packs (zip files) of a bundle, in bundle order.
+     *
+     * @param throttle I/O limits of the bundle read
+     */
+    public static void read(Path bundle, IoThrottle throttle, EntryConsumer consumer) throws IOException, InterruptedException {
+        try (InputStream is = new BufferedInputStream(throttle.wrap(Files.newInputStream(bundle)), BUFFER_SIZE)) {
+            if (isTar(bundle)) {
+                TarInputStream tar = new TarInputStream(isGzip(bundle) ? new GZIPInputStream(is) : is);
+                for (TarInputStream.TarEntry e = tar.getNextEntry(); e != null; e = tar.getNextEntry()) {
+                    if (e.isFile() && isPackEntry(e.getName())) {
+                        consumer.accept(e.getName(), e.getSize(), tar);
+                    }
+                }
+            } else {
+                ZipInputStream zip = new ZipInputStream(is);
+                for (ZipEntry e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+                    if (!e.isDirectory() && isPackEntry(e.getName())) {
+                        consumer.accept(e.getName(), e.getSize(), zip);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isPackEntry(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        if (fileName.startsWith(".") || !fileName.toLowerCase(Locale.ROOT).endsWith(ZIP)) {
+            log.debug("Skipping bundle entry {}", name);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Open the output of a bundle.
+     *
+     * @param target   bundle (tar, tar.gz or zip, by its name) or folder
+     * @param force    overwrite existing files
+     * @param throttle I/O limits of the writes
+     */
+    public static Output open(Path target, boolean force, IoThrottle throttle) throws IOException {
+        if (!isBundleName(target)) {
+            return new FolderOutput(Files.createDirectories(target), force, throttle);
+        }
+        if (!force && Files.exists(target)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        OutputStream os = new BufferedOutputStream(throttle.wrap(Files.newOutputStream(target)), BUFFER_SIZE);
+        if (isTar(target)) {
+            return new TarOutput(new TarOutputStream(isGzip(target) ? new GZIPOutputStream(os) : os));
+        }
+        return new ZipOutput(new ZipOutputStream(os));
+    }
+
+    private static final class FolderOutput implements Output {
+        private final Path folder;
+        private final boolean force;
+        private final IoThrottle throttle;
+
+        private FolderOutput(Path folder, boolean force, IoThrottle throttle) {
+            this.folder = folder;
+            this.force = force;
+            this.throttle = throttle;
+        }
+
+        @Override
+        public void write(String name, PackBuffer pack) throws IOException {
+            Path path = folder.resolve(name).normalize();
+            if (!path.startsWith(folder)) {
+                throw new IOException("Bundle entry outside of output folder : " + name);
+            }
+            if (!force && Files.exists(path)) {
+                throw new FileAlreadyExistsException(path.toString());
+            }
+            Files.createDirectories(path.getParent());
+            throttle.acquire(pack.getSize());
+            try (InputStream is = pack.openStream()) {
+                Files.copy(is, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+
+    private static final class TarOutput implements Output {
+        private final TarOutputStream tar;
+
+        private TarOutput(TarOutputStream tar) {
+            this.tar = tar;
+        }
+
+        @Override
+        public synchronized void write(String name, PackBuffer pack) throws IOException {
+            try (InputStream is = pack.openStream()) {
+                tar.writeEntry(name, pack.getSize(), is);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            tar.close();
+        }
+    }
+
+    private static final class ZipOutput implements Output {
+        private final ZipOutputStream zip;
+
+        private ZipOutput(ZipOutputStream zip) {
+            this.zip = zip;
+        }
+
+        /** Packs are already compressed : stored. */
+        @Override
+        public synchronized void write(String name, PackBuffer pack) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(pack.getSize());
+            entry.setCompressedSize(pack.getSize());
+            entry.setCrc(pack.getCrc());
+            zip.putNextEntry(entry);
+            try (InputStream is = pack.openStream()) {
+                is.transferTo(zip);
+            }
+            zip.closeEntry();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            zip.close();
+        }
+    }
+}
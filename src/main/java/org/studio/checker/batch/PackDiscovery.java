@@ -0,0 +1,171 @@
+package org.studio.checker.batch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Find the packs of a library folder.
+ * <p>
+ * Folders are listed in parallel (a network storage serves many listings at once) and packs are streamed to the
+ * consumer as soon as found, so that processing starts before the walk ends. Hidden files and folders (dot names, and
+ * the DOS hidden attribute on Windows) are skipped, from the attributes read once per entry.
+ * Include and exclude globs are matched against the path relative to the library folder, or the file name.
+ */
+@Slf4j
+public class PackDiscovery {
+
+    private final Path root;
+    private final boolean recursive;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final Predicate<Path> filter;
+    private final int parallelism;
+    /** DOS attributes on Windows, with the hidden flag : read in the same call as the basic ones. */
+    private final Class<? extends BasicFileAttributes> attributesType;
+
+    /**
+     * @param root        library folder
+     * @param recursive   walk sub-folders
+     * @param includes    globs of the packs to keep, all if empty
+     * @param excludes    globs of the packs to skip
+     * @param filter      other filter on the found files
+     * @param parallelism folders listed at once
+     */
+    public PackDiscovery(Path root, boolean recursive, List<String> includes, List<String> excludes,
+                         Predicate<Path> filter, int parallelism) {
+        this.root = root;
+        this.recursive = recursive;
+        this.includes = matchers(root.getFileSystem(), includes);
+        this.excludes = matchers(root.getFileSystem(), excludes);
+        this.filter = filter;
+        this.parallelism = Math.max(1, parallelism);
+        Set<String> views = root.getFileSystem().supportedFileAttributeViews();
+        this.attributesType = views.contains("dos") && !views.contains("posix")
+                ? DosFileAttributes.class : BasicFileAttributes.class;
+    }
+
+    private static List<PathMatcher> matchers(FileSystem fs, List<String> globs) {
+        return globs == null ? Collections.emptyList()
+                : globs.stream().map(g -> fs.getPathMatcher("glob:" + g)).collect(Collectors.toList());
+    }
+
+    /** Check a file found or notified in the library. */
+    public boolean accepts(Path path) {
+        try {
+            return accepts(path, Files.readAttributes(path, attributesType, LinkOption.NOFOLLOW_LINKS));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean accepts(Path path, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile() || isHidden(path, attrs) || !filter.test(path)) {
+            return false;
+        }
+        Path relative = root.relativize(path);
+        return (includes.isEmpty() || matches(includes, relative)) && !matches(excludes, relative);
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path relative) {
+        for (PathMatcher m : matchers) {
+            if (m.matches(relative) || m.matches(relative.getFileName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHidden(Path path, BasicFileAttributes attrs) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".")
+                || attrs instanceof DosFileAttributes && ((DosFileAttributes) attrs).isHidden();
+    }
+
+    /**
+     * Stream the packs found to the consumer, from many threads.
+     *
+     * @return completed once the walk ends
+     */
+    public CompletableFuture<Void> discover(Consumer<Path> consumer) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        AtomicInteger found = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        return CompletableFuture.runAsync(() -> new FolderTask(root, p -> {
+                    found.incrementAndGet();
+                    consumer.accept(p);
+                }).invoke(), pool)
+                .whenComplete((v, ex) -> {
+                    pool.shutdown();
+                    log.info("Found {} packs in {} ms", found.get(), System.currentTimeMillis() - start);
+                });
+    }
+
+    /** Find all the packs, in path order. */
+    public List<Path> list() {
+        List<Path> packs = Collections.synchronizedList(new ArrayList<>());
+        discover(packs::add).join();
+        List<Path> sorted = new ArrayList<>(packs);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private final class FolderTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path folder;
+        private final transient Consumer<Path> consumer;
+
+        private FolderTask(Path folder, Consumer<Path> consumer) {
+            this.folder = folder;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            List<FolderTask> subFolders = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, attributesType, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        // Removed meanwhile
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (recursive && !isHidden(entry, attrs)) {
+                            FolderTask task = new FolderTask(entry, consumer);
+                            task.fork();
+                            subFolders.add(task);
+                        }
+                    } else if (accepts(entry, attrs)) {
+                        consumer.accept(entry);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Unable to list {}", folder, e);
+            }
+            subFolders.forEach(FolderTask::join);
+        }
+    }
+}
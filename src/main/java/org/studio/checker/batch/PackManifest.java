@@ -0,0 +1,161 @@
+package org.studio.checker.batch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.studio.checker.CheckResult.CheckResultEnum;
+import studio.core.v1.utils.security.SecurityUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Persistent record of checked packs, for incremental runs.
+ * <p>
+ * A pack is skipped when it is unchanged since its last check (same size and modification time, or same central
+ * directory), was OK and was checked with the same options. The size and time test is a single file stat, the central
+ * directory (names, sizes and CRC of all entries) is read without the entries content.
+ * <p>
+ * Results are recorded as packs are checked, and the manifest is saved at most every {@link #SAVE_INTERVAL} : a crash
+ * loses the last results only.
+ */
+@Slf4j
+public class PackManifest {
+
+    public static final String MANIFEST_FILE = ".spc-manifest";
+    private static final String MANIFEST_EXTENSION = ".json";
+
+    /** Minimum delay between two saves while recording. */
+    public static final Duration SAVE_INTERVAL = Duration.ofSeconds(30);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Path manifestPath;
+    private final Map<String, Entry> entries;
+    private final AtomicLong lastSave = new AtomicLong(System.currentTimeMillis());
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private long size;
+        private long lastModified;
+        /** Hash of the central directory. */
+        private String hash;
+        private String options;
+        private CheckResultEnum result;
+    }
+
+    private PackManifest(Path manifestPath, Map<String, Entry> entries) {
+        this.manifestPath = manifestPath;
+        this.entries = entries;
+    }
+
+    /**
+     * Load the manifest of the output directory (empty if none).
+     *
+     * @param suffix manifest name suffix, when many batches share the output directory
+     */
+    public static PackManifest load(Path outputDir, String suffix) throws IOException {
+        Path manifestPath = outputDir.resolve(MANIFEST_FILE + suffix + MANIFEST_EXTENSION);
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        if (Files.exists(manifestPath)) {
+            entries.putAll(OBJECT_MAPPER.readValue(manifestPath.toFile(), new TypeReference<Map<String, Entry>>() {
+            }));
+            log.debug("Loaded {} entries from manifest {}", entries.size(), manifestPath);
+        }
+        return new PackManifest(manifestPath, entries);
+    }
+
+    private static String key(Path packPath) {
+        return packPath.toAbsolutePath().normalize().toString();
+    }
+
+    /** Check if the pack was OK with these options, and is unchanged since. */
+    public boolean isUnchangedAndOk(Path packPath, String options) {
+        Entry entry = entries.get(key(packPath));
+        if (entry == null || entry.getResult() != CheckResultEnum.OK || !Objects.equals(options, entry.getOptions())) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(packPath, BasicFileAttributes.class);
+            if (attrs.size() != entry.getSize()) {
+                return false;
+            }
+            if (attrs.lastModifiedTime().toMillis() == entry.getLastModified()) {
+                return true;
+            }
+            // Touched but maybe not modified
+            if (entry.getHash() != null && entry.getHash().equals(centralDirectoryHash(packPath))) {
+                entry.setLastModified(attrs.lastModifiedTime().toMillis());
+                return true;
+            }
+        } catch (IOException e) {
+            log.debug("Unable to compare {} with manifest", packPath, e);
+        }
+        return false;
+    }
+
+    /** Record a check result, saving the manifest if not saved for a while. */
+    public void record(Path packPath, String options, CheckResultEnum result) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(packPath, BasicFileAttributes.class);
+            entries.put(key(packPath), new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(),
+                    centralDirectoryHash(packPath), options, result));
+        } catch (IOException e) {
+            log.warn("Unable to record {} in manifest", packPath, e);
+        }
+        long last = lastSave.get();
+        long now = System.currentTimeMillis();
+        // One thread saves, the others go on
+        if (now - last >= SAVE_INTERVAL.toMillis() && lastSave.compareAndSet(last, now)) {
+            try {
+                save();
+            } catch (IOException e) {
+                log.warn("Unable to save manifest {}", manifestPath, e);
+            }
+        }
+    }
+
+    /**
+     * Fingerprint of the pack content : name, sizes and CRC of its entries, read from the central directory. Null if
+     * the pack is not a readable zip.
+     */
+    static String centralDirectoryHash(Path packPath) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (ZipFile zip = new ZipFile(packPath.toFile())) {
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                sb.append(entry.getName()).append('\0').append(entry.getSize()).append('\0')
+                        .append(entry.getCompressedSize()).append('\0').append(entry.getCrc()).append('\n');
+            }
+        } catch (ZipException e) {
+            log.debug("No central directory in {}", packPath.getFileName(), e);
+            return null;
+        }
+        return SecurityUtils.sha1Hex(sb.toString());
+    }
+
+    /** Write the manifest (atomically). */
+    public synchronized void save() throws IOException {
+        Path tmp = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), entries);
+        Files.move(tmp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSave.set(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,167 @@
+package org.studio.checker.batch;
+
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * Watch a folder for new or modified packs.
+ * <p>
+ * Uploads are debounced : a pack is dispatched once its size and modification time are stable for the settle delay
+ * and its zip central directory is readable (or once stable for long, so that a broken pack is reported). A pack is
+ * not dispatched again while in flight, nor when unchanged since it was processed (e.g. overwritten in place).
+ */
+@Slf4j
+public class PackWatcher implements AutoCloseable {
+
+    private static final long POLL_MILLIS = 500;
+    // Stable but unreadable for that many settle delays : dispatched anyway, to be reported
+    private static final int UNREADABLE_SETTLES = 4;
+
+    private final Path folder;
+    private final Predicate<Path> filter;
+    private final Duration settle;
+    private final WatchService watchService;
+    /** Candidates : last seen state, and since when. */
+    private final Map<Path, Stat> candidates = new ConcurrentHashMap<>();
+    private final Map<Path, Stat> handled = new ConcurrentHashMap<>();
+    private final Map<Path, Boolean> inFlight = new ConcurrentHashMap<>();
+
+    @EqualsAndHashCode(exclude = "since")
+    private static final class Stat {
+        private final long size;
+        private final long lastModified;
+        private final long since = System.currentTimeMillis();
+
+        private Stat(BasicFileAttributes attrs) {
+            this.size = attrs.size();
+            this.lastModified = attrs.lastModifiedTime().toMillis();
+        }
+    }
+
+    public PackWatcher(Path folder, Predicate<Path> filter, Duration settle) throws IOException {
+        this.folder = folder;
+        this.filter = filter;
+        this.settle = settle;
+        this.watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /** Mark packs already processed, they are dispatched only if modified. */
+    public void handled(Path pack) {
+        stat(pack).ifPresent(s -> handled.put(pack, s));
+    }
+
+    /**
+     * Dispatch arrivals until interrupted, or closed.
+     *
+     * @param dispatcher process a pack
+     */
+    public void run(Function<Path, CompletableFuture<?>> dispatcher) throws InterruptedException {
+        log.info("Watching {} for new packs", folder);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            rescan();
+                        } else {
+                            touched(folder.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                }
+                dispatchSettled(dispatcher);
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Watch service closed");
+        }
+    }
+
+    private void rescan() {
+        try (Stream<Path> list = Files.list(folder)) {
+            list.forEach(this::touched);
+        } catch (IOException e) {
+            log.warn("Unable to list {}", folder, e);
+        }
+    }
+
+    private void touched(Path path) {
+        if (!filter.test(path)) {
+            return;
+        }
+        stat(path).ifPresent(s -> candidates.merge(path, s, (previous, current) -> previous.equals(current) ? previous : current));
+    }
+
+    private void dispatchSettled(Function<Path, CompletableFuture<?>> dispatcher) {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Path, Stat>> it = candidates.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Stat> e = it.next();
+            Path path = e.getKey();
+            if (inFlight.containsKey(path)) {
+                // Written by its own processing, or modified meanwhile : decided once processed
+                continue;
+            }
+            Stat current = stat(path).orElse(null);
+            if (current == null || current.equals(handled.get(path))) {
+                it.remove();
+            } else if (!current.equals(e.getValue())) {
+                // Still written
+                e.setValue(current);
+            } else if (now - e.getValue().since >= settle.toMillis()
+                    && (isReadable(path) || now - e.getValue().since >= UNREADABLE_SETTLES * settle.toMillis())) {
+                it.remove();
+                log.info("New pack {}", path.getFileName());
+                inFlight.put(path, Boolean.TRUE);
+                dispatcher.apply(path).whenComplete((r, ex) -> {
+                    handled(path);
+                    inFlight.remove(path);
+                });
+            }
+        }
+    }
+
+    /** Complete zip : central directory is written last. */
+    private static boolean isReadable(Path path) {
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            return zip.size() > 0;
+        } catch (IOException e) {
+            log.debug("{} is not a complete zip yet", path.getFileName());
+            return false;
+        }
+    }
+
+    private static Optional<Stat> stat(Path path) {
+        try {
+            return Optional.of(new Stat(Files.readAttributes(path, BasicFileAttributes.class)));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,113 @@
+package org.studio.checker.batch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import picocli.CommandLine;
+import studio.core.v1.utils.security.SecurityUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Slice of the packs processed by one of many nodes sharing the same storage.
+ * <p>
+ * The partition is deterministic, without coordination : each pack goes to a shard from the hash of its path
+ * relative to the input folder alone (rendezvous hashing). Membership does not depend on the other packs, so nodes
+ * listing the folder at different times agree on every pack they both see, and adding or rewriting a pack moves no
+ * other one.
+ */
+@Getter
+@RequiredArgsConstructor
+@Slf4j
+public class Shard {
+
+    /** 1-based shard index. */
+    private final int index;
+    private final int count;
+
+    /** Parse "i/n". */
+    public static Shard parse(String value) {
+        String[] parts = value.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Shard must be 'i/n', not '" + value + "'");
+        }
+        int index = Integer.parseInt(parts[0].trim());
+        int count = Integer.parseInt(parts[1].trim());
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Shard index must be between 1 and " + count + ", not " + index);
+        }
+        return new Shard(index, count);
+    }
+
+    /** Keep the packs of this shard. */
+    public List<Path> select(Path root, List<Path> packs) {
+        if (count == 1) {
+            return packs;
+        }
+        List<Path> selected = packs.stream().filter(pack -> owner(key(root, pack)) == index).collect(Collectors.toList());
+        log.info("Shard {} : {} of {} packs, {} of {} bytes", this, selected.size(), packs.size(),
+                size(selected), size(packs));
+        return selected;
+    }
+
+    /** Rendezvous hashing : the shard with the highest score for this key owns the pack. */
+    int owner(String key) {
+        long hash = Long.parseUnsignedLong(key.substring(0, 16), 16);
+        int owner = 1;
+        long best = Long.MIN_VALUE;
+        for (int i = 1; i <= count; i++) {
+            long score = mix(hash + i * 0x9E3779B97F4A7C15L);
+            if (score > best) {
+                best = score;
+                owner = i;
+            }
+        }
+        return owner;
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long size(List<Path> packs) {
+        long total = 0;
+        for (Path pack : packs) {
+            try {
+                total += Files.size(pack);
+            } catch (IOException e) {
+                // Gone meanwhile
+            }
+        }
+        return total;
+    }
+
+    /** Stable key : hash of the path relative to the input folder, whatever the mount point. */
+    static String key(Path root, Path path) {
+        Path relative = root != null && path.startsWith(root) ? root.relativize(path) : path.getFileName();
+        return SecurityUtils.sha1Hex(relative.toString().replace('\\', '/'));
+    }
+
+    /** Suffix of the per-shard state files. */
+    public String fileSuffix() {
+        return "-" + index + "of" + count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+
+    public static class Converter implements CommandLine.ITypeConverter<Shard> {
+        @Override
+        public Shard convert(String value) {
+            return parse(value);
+        }
+    }
+}
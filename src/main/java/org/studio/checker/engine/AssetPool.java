@@ -0,0 +1,105 @@
+package org.studio.checker.engine;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of the CPU-bound assets conversions of all packs, running at most the given number at once.
+ * <p>
+ * Each worker runs its task in a {@link TaskSlot} : a worker whose conversion is abandoned is written off and
+ * replaced at once, and exits once its stuck task returns. Hung assets don't starve the pool.
+ */
+@Slf4j
+public class AssetPool implements Executor {
+
+    /** Idle workers exit after this delay. */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    @Getter
+    private final int parallelism;
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    // Workers holding a slot : abandoned ones are not counted
+    private final AtomicInteger workers = new AtomicInteger();
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public AssetPool(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Asset pool is shut down");
+        }
+        queue.add(command);
+        startWorker();
+    }
+
+    /** Queued tasks still run, then workers exit. */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /** Start a worker, if a slot is free. */
+    private void startWorker() {
+        int n;
+        do {
+            n = workers.get();
+            if (n >= parallelism) {
+                return;
+            }
+        } while (!workers.compareAndSet(n, n + 1));
+        Thread t = new Thread(this::work, "spc-asset-" + count.incrementAndGet());
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void work() {
+        boolean attached = true;
+        try {
+            Runnable task;
+            while ((task = next()) != null) {
+                TaskSlot slot = new TaskSlot(this::leave);
+                try {
+                    slot.run(task);
+                } finally {
+                    attached = slot.finish();
+                }
+                if (!attached) {
+                    log.debug("Abandoned asset worker {} exits", Thread.currentThread().getName());
+                    return;
+                }
+            }
+        } finally {
+            if (attached) {
+                leave();
+            }
+        }
+    }
+
+    /** Next task, or null once idle. */
+    private Runnable next() {
+        try {
+            return shutdown ? queue.poll() : queue.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** Give a slot back : queued tasks get a new worker. */
+    private void leave() {
+        workers.decrementAndGet();
+        if (!queue.isEmpty()) {
+            startWorker();
+        }
+    }
+}
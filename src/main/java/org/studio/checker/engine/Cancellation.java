@@ -0,0 +1,136 @@
+package org.studio.checker.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import studio.core.v1.exception.StoryTellerException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Cancellation scope of a pack (or of an asset inside a pack).
+ * <p>
+ * External processes and temp files created inside the scope are tracked : cancelling the scope kills the processes
+ * and deletes the files, and work not started yet is skipped through {@link #throwIfCancelled()}. Cancelling a scope
+ * cancels its children.
+ */
+@Slf4j
+public class Cancellation {
+
+    /** Scope that is never cancelled, for work outside any pack. */
+    private static final Cancellation NONE = new Cancellation();
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    private final Set<Cancellation> children = ConcurrentHashMap.newKeySet();
+    private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private final Set<Path> tempFiles = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile Throwable cause;
+
+    /** Scope of the current thread. */
+    public static Cancellation current() {
+        Cancellation c = CURRENT.get();
+        return c != null ? c : NONE;
+    }
+
+    /** Run in this scope, on the current thread. */
+    public <T> T call(Supplier<T> body) {
+        Cancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            throwIfCancelled();
+            return body.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /** Create a child scope, cancelled with this one. */
+    public Cancellation child() {
+        Cancellation child = new Cancellation();
+        children.add(child);
+        if (isCancelled()) {
+            child.cancel(cause);
+        }
+        return child;
+    }
+
+    /** Forget a completed child. */
+    public void remove(Cancellation child) {
+        children.remove(child);
+    }
+
+    public boolean isCancelled() {
+        return cause != null;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    public void throwIfCancelled() {
+        if (cause != null) {
+            throw new StoryTellerException("Cancelled", cause);
+        }
+    }
+
+    /** Cancel the scope : kill its processes and delete its temp files. Only the first cause is kept. */
+    public void cancel(Throwable cause) {
+        if (this == NONE) {
+            return;
+        }
+        synchronized (this) {
+            if (this.cause != null) {
+                return;
+            }
+            this.cause = cause;
+        }
+        processes.forEach(p -> {
+            log.debug("Killing process {}", p.pid());
+            p.destroyForcibly();
+        });
+        processes.clear();
+        tempFiles.forEach(this::deleteTemp);
+        children.forEach(c -> c.cancel(cause));
+        listeners.forEach(Runnable::run);
+    }
+
+    /** Run an action on cancellation (at once if already cancelled). */
+    public void onCancel(Runnable listener) {
+        listeners.add(listener);
+        if (isCancelled() && listeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /** Track a running process. It is killed at once if the scope is already cancelled. */
+    public Process track(Process process) {
+        processes.removeIf(p -> !p.isAlive());
+        processes.add(process);
+        if (isCancelled()) {
+            process.destroyForcibly();
+        }
+        return process;
+    }
+
+    /** Track a temp file, deleted on cancellation. */
+    public Path trackTemp(Path tempFile) {
+        tempFiles.add(tempFile);
+        return tempFile;
+    }
+
+    public void deleteTemp(Path tempFile) {
+        tempFiles.remove(tempFile);
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("Unable to delete temp file {}", tempFile, e);
+        }
+    }
+}
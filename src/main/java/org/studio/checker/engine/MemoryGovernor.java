@@ -0,0 +1,147 @@
+package org.studio.checker.engine;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.studio.checker.pipeline.ByteBudget;
+import studio.core.v1.exception.StoryTellerException;
+import studio.core.v1.model.asset.MediaAssetType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static studio.core.v1.utils.io.FileUtils.readableByteSize;
+
+/**
+ * Global memory budget, shared by all packs in flight.
+ * <p>
+ * The budget is derived from the JVM max heap and the container (cgroup) memory limit. Packs are admitted on the
+ * estimated size of their model, assets conversions on their estimated working set (raw bytes, decoded image, PCM
+ * samples, encoded output) : a pack or an asset waits until it fits.
+ */
+@Slf4j
+public class MemoryGovernor {
+
+    private static final List<Path> CGROUP_LIMITS = List.of(
+            Path.of("/sys/fs/cgroup/memory.max"), // cgroup v2
+            Path.of("/sys/fs/cgroup/memory/memory.limit_in_bytes")); // cgroup v1
+    // Unlimited cgroup v1 is a huge page-aligned value
+    private static final long CGROUP_UNLIMITED = Long.MAX_VALUE / 2;
+
+    // Share of the available memory used for packs and assets, the rest is left to the JVM
+    private static final double BUDGET_RATIO = 0.6;
+    // Heap outside of the JVM heap (metaspace, threads, buffers) in a container
+    private static final double CONTAINER_HEAP_RATIO = 0.75;
+    // Share of the budget for packs models, the rest is for assets
+    private static final double PACK_RATIO = 0.25;
+
+    // Jackson model of story.json
+    private static final long DESCRIPTOR_FACTOR = 10;
+    // Decoded 320x240 image, redrawn and quantized copies
+    private static final long DECODED_IMAGE = 3 * 320 * 240 * 4L;
+
+    @Getter
+    private final long capacity;
+    @Getter
+    private final ByteBudget packBudget;
+    @Getter
+    private final ByteBudget assetBudget;
+
+    public MemoryGovernor(long capacity) {
+        this.capacity = capacity;
+        this.packBudget = new ByteBudget((long) (capacity * PACK_RATIO));
+        this.assetBudget = new ByteBudget(capacity - packBudget.getCapacity());
+    }
+
+    /**
+     * Create the governor.
+     *
+     * @param budget bytes budget, or 0 to detect it
+     */
+    public static MemoryGovernor create(long budget) {
+        if (budget > 0) {
+            return new MemoryGovernor(budget);
+        }
+        long heap = Runtime.getRuntime().maxMemory();
+        long cgroup = cgroupLimit();
+        long available = Math.min(heap, cgroup == Long.MAX_VALUE ? Long.MAX_VALUE : (long) (cgroup * CONTAINER_HEAP_RATIO));
+        log.debug("Max heap: {}, container limit: {}", readableByteSize(heap),
+                cgroup == Long.MAX_VALUE ? "none" : readableByteSize(cgroup));
+        return new MemoryGovernor((long) (available * BUDGET_RATIO));
+    }
+
+    /** Container memory limit, or Long.MAX_VALUE if none. */
+    static long cgroupLimit() {
+        for (Path limit : CGROUP_LIMITS) {
+            if (!Files.isReadable(limit)) {
+                continue;
+            }
+            try {
+                String value = Files.readString(limit).trim();
+                if (!"max".equals(value)) {
+                    long bytes = Long.parseLong(value);
+                    if (bytes > 0 && bytes < CGROUP_UNLIMITED) {
+                        return bytes;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                log.debug("Unreadable cgroup limit {}", limit, e);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /** Estimated working set of a pack model (nodes and thumbnail). */
+    public static long estimatePack(PackCost cost) {
+        return cost.getDescriptorSize() * DESCRIPTOR_FACTOR;
+    }
+
+    /** Estimated working set of an asset conversion. */
+    public static long estimateAsset(MediaAssetType type, long size) {
+        if (type == null) {
+            return 2 * size;
+        }
+        if (type.getMime().startsWith("image/")) {
+            // raw + converted + decoded images
+            return 2 * size + DECODED_IMAGE;
+        }
+        if (type == MediaAssetType.MP3) {
+            // raw + re-encoded
+            return 2 * size;
+        }
+        // raw + PCM samples (resampled, float) + encoded output
+        return 6 * size;
+    }
+
+    /** Wait until the pack fits into the budget. Return the reserved bytes. */
+    public long admitPack(PackCost cost) {
+        return reservePack(estimatePack(cost));
+    }
+
+    /** Wait until the bytes of a pack buffered in memory (e.g. read from a bundle) fit into the budget. */
+    public long reservePack(long bytes) {
+        try {
+            packBudget.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoryTellerException("Interrupted while waiting for memory", e);
+        }
+        return bytes;
+    }
+
+    public void releasePack(long reserved) {
+        packBudget.release(reserved);
+    }
+
+    /** Log admission metrics. */
+    public void logMetrics() {
+        log.info("Memory budget {} : packs {}, assets {}", readableByteSize(capacity),
+                metrics(packBudget), metrics(assetBudget));
+    }
+
+    private static String metrics(ByteBudget budget) {
+        return String.format("[admitted %d, delayed %d (%d ms), oversized %d, peak %s]", budget.getAdmitted(),
+                budget.getDelayed(), budget.getWaitMillis(), budget.getOversized(), readableByteSize(budget.getPeak()));
+    }
+}
@@ -0,0 +1,99 @@
+package org.studio.checker.engine;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import studio.core.v1.model.asset.MediaAssetType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.ASSETS_DIR;
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.STORY_JSON;
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.THUMBNAIL_PNG;
+
+/**
+ * Estimated processing cost of a pack, read from the zip central directory only (no entry is inflated).
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+@Slf4j
+public class PackCost {
+
+    // Fixed cost of an asset (read, hash, write), in bytes equivalent
+    private static final long ASSET_COST = 16 * 1024L;
+    // Audio not in MP3 goes through FFmpeg / LAME
+    private static final long AUDIO_CONVERSION_FACTOR = 8;
+    // Image not in BMP is decoded and quantized
+    private static final long IMAGE_CONVERSION_FACTOR = 4;
+
+    private final Path path;
+    private final long fileSize;
+    /** Uncompressed size of story.json and thumbnail. */
+    private final long descriptorSize;
+    private final int assetCount;
+    /** Uncompressed size of non-MP3 audio assets. */
+    private final long audioToConvert;
+    /** Uncompressed size of non-BMP image assets. */
+    private final long imageToConvert;
+
+    /** Cost estimate, in bytes equivalent. */
+    public long getEstimate() {
+        return fileSize + assetCount * ASSET_COST + audioToConvert * AUDIO_CONVERSION_FACTOR
+                + imageToConvert * IMAGE_CONVERSION_FACTOR;
+    }
+
+    /**
+     * Cost of a pack known by its size only, e.g. streamed from a bundle. Its central directory is not read before the
+     * pack is processed, so the descriptor size is 0 and the governor admits it at once : the caller reserves the bytes
+     * buffered for the pack instead.
+     */
+    public static PackCost ofSize(Path path, long fileSize) {
+        return new PackCost(path, fileSize, 0, 0, 0, 0);
+    }
+
+    public static PackCost estimate(Path path) {
+        long fileSize = 0;
+        long descriptorSize = 0;
+        int assetCount = 0;
+        long audioToConvert = 0;
+        long imageToConvert = 0;
+        try {
+            fileSize = Files.size(path);
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (STORY_JSON.equals(name) || THUMBNAIL_PNG.equals(name)) {
+                        descriptorSize += Math.max(0, entry.getSize());
+                    }
+                    if (entry.isDirectory() || !name.startsWith(ASSETS_DIR) || name.lastIndexOf('.') < 0) {
+                        continue;
+                    }
+                    assetCount++;
+                    MediaAssetType type = MediaAssetType.fromExtension(name.substring(name.lastIndexOf('.')).toLowerCase());
+                    long size = Math.max(0, entry.getSize());
+                    if (type == null) {
+                        continue;
+                    }
+                    if (type.getMime().startsWith("audio/") && type != MediaAssetType.MP3) {
+                        audioToConvert += size;
+                    } else if (type.getMime().startsWith("image/") && type != MediaAssetType.BMP) {
+                        imageToConvert += size;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Broken pack : it will fail fast, its file size is enough
+            log.debug("Unable to read central directory of {}", path.getFileName(), e);
+        }
+        return new PackCost(path, fileSize, descriptorSize, assetCount, audioToConvert, imageToConvert);
+    }
+}
@@ -0,0 +1,156 @@
+package org.studio.checker.engine;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.studio.checker.CheckResult;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Concurrent multi-pack engine.
+ * <p>
+ * A fixed number of packs are processed at once by the pack workers. Their assets conversions all go to one shared
+ * {@link AssetPool}, so idle cores pick up assets of any pack in flight. The asset queue is bounded by the
+ * number of pack workers : each of them waits for its own assets before taking the next pack.
+ * <p>
+ * Packs and assets conversions are admitted by the {@link MemoryGovernor}.
+ */
+@Slf4j
+public class PackEngine implements AutoCloseable {
+
+    @Getter
+    private final int packParallelism;
+    private final Executor packExecutor;
+    // Pack executor created by the engine, to shut down with it
+    private final ExecutorService ownedPackExecutor;
+    private final AssetPool assetPool;
+    private final ExecutorService blockingPool;
+    private final AtomicLong sequence = new AtomicLong();
+    @Getter
+    private final MemoryGovernor governor;
+    @Getter
+    private final Watchdog watchdog = new Watchdog();
+
+    public PackEngine(int packParallelism, int assetParallelism, MemoryGovernor governor) {
+        this(null, packParallelism, assetParallelism, governor);
+    }
+
+    /**
+     * @param packExecutor     executor of the packs, shared with the caller : not shut down with the engine. Created
+     *                         if null
+     * @param packParallelism  packs processed at once
+     * @param assetParallelism size of the assets pool
+     * @param governor         memory governor
+     */
+    public PackEngine(Executor packExecutor, int packParallelism, int assetParallelism, MemoryGovernor governor) {
+        this.packParallelism = Math.max(1, packParallelism);
+        this.governor = governor;
+        if (packExecutor != null) {
+            this.packExecutor = packExecutor;
+            this.ownedPackExecutor = null;
+        } else {
+            // Queued packs are taken by priority. Pack workers mostly wait for I/O and their assets
+            this.ownedPackExecutor = new ThreadPoolExecutor(this.packParallelism, this.packParallelism, 0L, TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<>(), Threads.blocking("spc-pack"));
+            this.packExecutor = ownedPackExecutor;
+        }
+        this.assetPool = new AssetPool(assetParallelism);
+        // Process-bound conversions don't hold asset workers, when threads are cheap
+        this.blockingPool = Threads.isVirtual() ? Threads.newBlockingExecutor("spc-io", assetPool.getParallelism()) : null;
+        log.debug("Pack engine started with {} pack workers and {} asset workers{}", this.packParallelism, assetPool.getParallelism(),
+                Threads.isVirtual() ? ", on virtual threads for blocking work" : "");
+    }
+
+    /** Many packs in flight : progress must not be rendered concurrently on the console. */
+    public boolean isConcurrent() {
+        return packParallelism > 1;
+    }
+
+    /** Queue a pack. It starts once admitted by the memory governor, on its cost estimated then. */
+    public CompletableFuture<CheckResult> submit(Path packPath, Function<Path, CheckResult> checker) {
+        return submit(packPath, null, 0, checker);
+    }
+
+    /**
+     * Queue a pack, with a priority among the queued packs (on the engine pack executor).
+     *
+     * @param cost     cost of the pack, estimated once by the caller
+     * @param priority lowest first, then in submission order
+     */
+    public CompletableFuture<CheckResult> submit(PackCost cost, long priority, Function<Path, CheckResult> checker) {
+        return submit(cost.getPath(), cost, priority, checker);
+    }
+
+    private CompletableFuture<CheckResult> submit(Path packPath, PackCost cost, long priority, Function<Path, CheckResult> checker) {
+        CompletableFuture<CheckResult> result = new CompletableFuture<>();
+        packExecutor.execute(new PackTask(priority, sequence.getAndIncrement(), () -> {
+            long reserved;
+            try {
+                reserved = governor.admitPack(cost != null ? cost : PackCost.estimate(packPath));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                result.complete(checker.apply(packPath));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                governor.releasePack(reserved);
+            }
+        }));
+        return result;
+    }
+
+    @RequiredArgsConstructor
+    private static final class PackTask implements Runnable, Comparable<PackTask> {
+        private final long priority;
+        private final long sequence;
+        private final Runnable task;
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(PackTask o) {
+            int c = Long.compare(priority, o.priority);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /** Assets conversions of all packs. */
+    public Executor getAssetPool() {
+        return assetPool;
+    }
+
+    /** Process-bound assets conversions (FFmpeg) of all packs : the assets pool, or virtual threads on JDK 21+. */
+    public Executor getBlockingPool() {
+        return blockingPool != null ? blockingPool : assetPool;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (ownedPackExecutor != null) {
+            ownedPackExecutor.shutdown();
+            if (!ownedPackExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Pack workers still running after shutdown");
+            }
+        }
+        assetPool.shutdown();
+        if (blockingPool != null) {
+            blockingPool.shutdown();
+        }
+        watchdog.close();
+    }
+}
@@ -0,0 +1,176 @@
+package org.studio.checker.engine;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import studio.core.v1.model.asset.MediaAsset;
+import studio.core.v1.model.asset.MediaAssetType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.ASSETS_DIR;
+
+/**
+ * Estimated conversion time and size of a pack, from a few sampled assets per type.
+ * <p>
+ * Only the central directory and the sampled entries are read. Conversion time and output size of each type are
+ * extrapolated from its samples, in proportion of the uncompressed and stored sizes.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+@Slf4j
+public class PackEstimate {
+
+    private final Path path;
+    private final int assetCount;
+    private final int sampleCount;
+    /** Samples failing conversion : the pack would fail. */
+    private final int failedSamples;
+    /** Extrapolated conversion time of all assets. */
+    private final long conversionMillis;
+    private final long fileSize;
+    private final long estimatedSize;
+
+    public long getSavings() {
+        return fileSize - estimatedSize;
+    }
+
+    /**
+     * Sample a pack.
+     *
+     * @param samples        assets sampled per type
+     * @param imageProcessor image conversion, as run
+     * @param audioProcessor audio conversion, as run
+     */
+    public static PackEstimate sample(Path path, int samples, Function<MediaAsset, byte[]> imageProcessor,
+                                      Function<MediaAsset, byte[]> audioProcessor) throws IOException {
+        long fileSize = Files.size(path);
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            Map<MediaAssetType, List<ZipEntry>> byType = new EnumMap<>(MediaAssetType.class);
+            int assetCount = 0;
+            long otherStored = fileSize;
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.startsWith(ASSETS_DIR) || name.lastIndexOf('.') < 0) {
+                    continue;
+                }
+                MediaAssetType type = MediaAssetType.fromExtension(name.substring(name.lastIndexOf('.')).toLowerCase());
+                if (type != null) {
+                    byType.computeIfAbsent(type, t -> new ArrayList<>()).add(entry);
+                    assetCount++;
+                    otherStored -= entry.getCompressedSize();
+                }
+            }
+            int sampleCount = 0;
+            int failed = 0;
+            boolean modified = false;
+            double nanos = 0;
+            // Descriptor, thumbnail and zip structure are kept
+            double estimatedSize = otherStored;
+            for (Map.Entry<MediaAssetType, List<ZipEntry>> e : byType.entrySet()) {
+                MediaAssetType type = e.getKey();
+                Function<MediaAsset, byte[]> processor = type.getMime().startsWith("image/") ? imageProcessor : audioProcessor;
+                List<ZipEntry> entries = e.getValue();
+                long sampledSize = 0;
+                long sampledStored = 0;
+                long sampledOutput = 0;
+                long sampledNanos = 0;
+                for (ZipEntry entry : pick(entries, samples)) {
+                    byte[] rawData;
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        rawData = is.readAllBytes();
+                    }
+                    MediaAsset asset = new MediaAsset(entry.getName().substring(ASSETS_DIR.length()));
+                    asset.setType(type);
+                    asset.setRawData(rawData);
+                    long start = System.nanoTime();
+                    byte[] converted;
+                    try {
+                        converted = processor.apply(asset);
+                    } catch (Exception ex) {
+                        log.debug("Sample {} of {} failed", asset.getName(), path.getFileName(), ex);
+                        failed++;
+                        converted = rawData;
+                    }
+                    sampledNanos += System.nanoTime() - start;
+                    sampledSize += rawData.length;
+                    sampledStored += entry.getCompressedSize();
+                    modified |= !Arrays.equals(converted, rawData);
+                    // A modified pack is rewritten : all its assets are deflated again
+                    sampledOutput += deflatedSize(converted);
+                    sampleCount++;
+                }
+                long typeSize = sum(entries, ZipEntry::getSize);
+                long typeStored = sum(entries, ZipEntry::getCompressedSize);
+                nanos += sampledSize > 0 ? (double) sampledNanos * typeSize / sampledSize : 0;
+                estimatedSize += sampledStored > 0 ? (double) sampledOutput * typeStored / sampledStored : typeStored;
+            }
+            return new PackEstimate(path, assetCount, sampleCount, failed,
+                    TimeUnit.NANOSECONDS.toMillis((long) nanos), fileSize, modified ? Math.round(estimatedSize) : fileSize);
+        }
+    }
+
+    /** Stored size of a written asset. */
+    private static long deflatedSize(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            long size = 0;
+            while (!deflater.finished()) {
+                size += deflater.deflate(buffer);
+            }
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Samples spread over the entries, in name order (hashes : no bias). */
+    private static List<ZipEntry> pick(List<ZipEntry> entries, int samples) {
+        entries.sort(Comparator.comparing(ZipEntry::getName));
+        int n = Math.min(samples, entries.size());
+        List<ZipEntry> picked = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            picked.add(entries.get(i * entries.size() / n));
+        }
+        return picked;
+    }
+
+    private static long sum(Collection<ZipEntry> entries, Function<ZipEntry, Long> size) {
+        return entries.stream().mapToLong(e -> Math.max(0, size.apply(e))).sum();
+    }
+
+    /**
+     * Wall time of a run : packs are spread on the pack slots, assets of a pack on the asset pool.
+     *
+     * @param packParallelism  packs processed at once
+     * @param assetParallelism assets of a pack converted at once
+     */
+    public static long wallMillis(Collection<PackEstimate> estimates, int packParallelism, int assetParallelism) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int effective = Math.max(1, Math.min(cores, Math.max(packParallelism, assetParallelism)));
+        long total = estimates.stream().mapToLong(PackEstimate::getConversionMillis).sum();
+        long longest = estimates.stream().mapToLong(PackEstimate::getConversionMillis).max().orElse(0);
+        return Math.max(total / effective, longest / Math.max(1, Math.min(cores, assetParallelism)));
+    }
+}
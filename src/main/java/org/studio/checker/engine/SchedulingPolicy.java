@@ -0,0 +1,45 @@
+package org.studio.checker.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Order in which discovered packs are dispatched to the pack workers.
+ */
+@Slf4j
+public enum SchedulingPolicy {
+
+    /** Discovery order. */
+    FIFO(0),
+    /** Most expensive packs first : a huge pack can't be picked up last and stretch the run. */
+    LONGEST_FIRST(-1),
+    /** Cheapest packs first : results come early. */
+    SMALLEST_FIRST(1);
+
+    // Sign of the estimated cost in the priority, lowest first
+    private final int sign;
+    private final Comparator<PackCost> comparator;
+
+    SchedulingPolicy(int sign) {
+        this.sign = sign;
+        this.comparator = Comparator.comparingLong(this::priority);
+    }
+
+    /** Priority of a pack among the queued ones, lowest first (see {@link PackEngine#submit(PackCost, long, java.util.function.Function)}). */
+    public long priority(PackCost cost) {
+        return sign * cost.getEstimate();
+    }
+
+    public List<PackCost> order(List<PackCost> packs) {
+        if (sign == 0 || packs.size() < 2) {
+            return packs;
+        }
+        return packs.stream()
+                .peek(cost -> log.debug("Estimated {}", cost))
+                .sorted(comparator.thenComparing(PackCost::getPath))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,61 @@
+package org.studio.checker.engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Slot of a bounded executor, held by the task running on a thread.
+ * <p>
+ * An abandoned task (timeout, cancelled pack) may be stuck in an in-process decoder that ignores interruption : its
+ * slot is then given back at once through {@link #releaser()}, so the executor runs its next tasks without it, and the
+ * stuck thread is left to finish on its own.
+ */
+public final class TaskSlot {
+
+    private static final ThreadLocal<TaskSlot> CURRENT = new ThreadLocal<>();
+
+    private final AtomicBoolean held = new AtomicBoolean(true);
+    private final Runnable release;
+
+    /**
+     * @param release gives the slot back to its executor, if the task is abandoned while running
+     */
+    public TaskSlot(Runnable release) {
+        this.release = release;
+    }
+
+    /** Run the task in this slot, on the current thread. */
+    public void run(Runnable task) {
+        TaskSlot previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            task.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * End of the task.
+     *
+     * @return true if the slot is still held, to be given back by the executor : false if the task was abandoned
+     */
+    public boolean finish() {
+        return held.compareAndSet(true, false);
+    }
+
+    /**
+     * Action giving back the slot of the task running on the current thread, to run when the task is abandoned. Does
+     * nothing once the task is over, or outside a slot.
+     */
+    public static Runnable releaser() {
+        TaskSlot slot = CURRENT.get();
+        return slot != null ? slot::release : () -> {
+        };
+    }
+
+    private void release() {
+        if (held.compareAndSet(true, false)) {
+            release.run();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.studio.checker.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads of blocking work : pack reads and writes, waits for FFmpeg processes.
+ * <p>
+ * Platform threads here. On JDK 21+, the multi-release jar replaces this class by the one of {@code src/main/java21},
+ * using virtual threads.
+ */
+public final class Threads {
+
+    private Threads() {
+        throw new IllegalArgumentException("Utility class");
+    }
+
+    /** Blocking work runs on virtual threads. */
+    public static boolean isVirtual() {
+        return false;
+    }
+
+    /** Current thread is virtual : CPU-bound work should be handed over to platform threads. */
+    public static boolean isCurrentVirtual() {
+        return false;
+    }
+
+    /** Named daemon threads, for blocking work. */
+    public static ThreadFactory blocking(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Executor of blocking tasks, running at most the given number at once. */
+    public static ExecutorService newBlockingExecutor(String name, int maxThreads) {
+        return Executors.newFixedThreadPool(maxThreads, blocking(name));
+    }
+}
@@ -0,0 +1,50 @@
+package org.studio.checker.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import studio.core.v1.exception.ConversionTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforce deadlines on cancellation scopes.
+ * <p>
+ * When a deadline expires, its scope is cancelled with a {@link ConversionTimeoutException} : running FFmpeg jobs are
+ * killed, and work waiting on the scope (see {@link Cancellation#onCancel(Runnable)}) is abandoned, even if a stuck
+ * in-process decoder still holds its thread.
+ */
+@Slf4j
+public class Watchdog implements AutoCloseable {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "spc-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Arm a deadline. Cancel the returned future to disarm it.
+     *
+     * @param scope   scope to cancel
+     * @param timeout deadline, none if zero or negative
+     * @param what    description of the watched work
+     */
+    public Future<?> watch(Cancellation scope, Duration timeout, String what) {
+        if (timeout.isZero() || timeout.isNegative()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return scheduler.schedule(() -> {
+            log.warn("{} timed out after {} seconds", what, timeout.toSeconds());
+            scope.cancel(new ConversionTimeoutException(what + " timed out after " + timeout.toSeconds() + " seconds"));
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
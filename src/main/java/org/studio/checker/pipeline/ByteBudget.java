@@ -0,0 +1,106 @@
+package org.studio.checker.pipeline;
+
+import lombok.Getter;
+
+/**
+ * Bytes semaphore : caps the bytes in flight. An item larger than the whole budget is admitted alone.
+ * <p>
+ * A budget may have a parent (a global one) : bytes are then acquired from both.
+ */
+public class ByteBudget {
+
+    @Getter
+    private final long capacity;
+    private final ByteBudget parent;
+
+    private long used;
+    // Admission metrics
+    private long admitted;
+    private long delayed;
+    private long oversized;
+    private long waitNanos;
+    private long peak;
+
+    public ByteBudget(long capacity) {
+        this(capacity, null);
+    }
+
+    public ByteBudget(long capacity, ByteBudget parent) {
+        this.capacity = Math.max(1, capacity);
+        this.parent = parent;
+    }
+
+    /** Wait until the given bytes fit into the budget (and its parent). */
+    public void acquire(long bytes) throws InterruptedException {
+        acquireLocal(bytes);
+        if (parent != null) {
+            try {
+                parent.acquire(bytes);
+            } catch (InterruptedException e) {
+                releaseLocal(bytes);
+                throw e;
+            }
+        }
+    }
+
+    public void release(long bytes) {
+        if (parent != null) {
+            parent.release(bytes);
+        }
+        releaseLocal(bytes);
+    }
+
+    private synchronized void acquireLocal(long bytes) throws InterruptedException {
+        long amount = clamp(bytes);
+        if (bytes > capacity) {
+            oversized++;
+        }
+        if (used + amount > capacity) {
+            delayed++;
+            long start = System.nanoTime();
+            while (used + amount > capacity) {
+                wait();
+            }
+            waitNanos += System.nanoTime() - start;
+        }
+        admitted++;
+        used += amount;
+        peak = Math.max(peak, used);
+    }
+
+    private synchronized void releaseLocal(long bytes) {
+        used -= clamp(bytes);
+        notifyAll();
+    }
+
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /** Admissions (immediate or delayed). */
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    /** Admissions that had to wait for bytes to be released. */
+    public synchronized long getDelayed() {
+        return delayed;
+    }
+
+    /** Admissions larger than the whole budget, run alone. */
+    public synchronized long getOversized() {
+        return oversized;
+    }
+
+    public synchronized long getWaitMillis() {
+        return waitNanos / 1_000_000;
+    }
+
+    public synchronized long getPeak() {
+        return peak;
+    }
+
+    private long clamp(long bytes) {
+        return Math.min(Math.max(0, bytes), capacity);
+    }
+}
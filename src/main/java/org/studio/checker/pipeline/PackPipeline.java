@@ -0,0 +1,255 @@
+package org.studio.checker.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+import me.tongfei.progressbar.ProgressBar;
+import org.studio.checker.engine.Cancellation;
+import org.studio.checker.engine.MemoryGovernor;
+import org.studio.checker.engine.TaskSlot;
+import org.studio.checker.engine.Threads;
+import org.studio.checker.engine.Watchdog;
+import studio.core.v1.exception.StoryTellerException;
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.model.asset.MediaAsset;
+import studio.core.v1.model.asset.MediaAssetType;
+import studio.core.v1.service.AssetReader;
+import studio.core.v1.service.PackOutput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Staged pack processing : read → convert → write.
+ * <p>
+ * Assets are read one by one from the source pack, converted on the conversion executor and written to the output
+ * pack by a single writer thread, as soon as they are ready. The estimated working set of the assets in flight is
+ * capped by a {@link ByteBudget} : reading waits while the conversion and writing stages are full.
+ * <p>
+ * The output is only touched once an asset is modified : unchanged assets met before are copied again from the
+ * source at the end, so unchanged packs are never written.
+ * <p>
+ * When only checking assets read on demand from an opened pack, the read stage is left to the conversion : queued
+ * assets hold no content, only the ones being inspected are in memory.
+ * <p>
+ * On the first asset failure, no more asset is read. In fail-fast mode, the pack {@link Cancellation} is also
+ * cancelled : queued conversions are skipped, running FFmpeg jobs are killed and the pipeline returns once the
+ * running write, if any, is over.
+ * <p>
+ * Each conversion has its own deadline, enforced by the {@link Watchdog} : a stuck conversion is abandoned and fails
+ * the pack with a timeout. The same happens to all conversions when the pack scope is cancelled. An abandoned
+ * conversion gives its {@link TaskSlot} back, so queued conversions still run while it is stuck.
+ */
+@Slf4j
+public class PackPipeline {
+
+    private final Executor convertExecutor;
+    private final Executor audioExecutor;
+    private final ByteBudget budget;
+    private final ProgressBar progressBar;
+    private final Cancellation cancellation;
+    private final boolean failFast;
+    private final Watchdog watchdog;
+    private final Duration assetTimeout;
+
+    /**
+     * @param convertExecutor executor of CPU-bound conversions (images)
+     * @param audioExecutor   executor of audio conversions, mostly waiting for FFmpeg
+     */
+    public PackPipeline(Executor convertExecutor, Executor audioExecutor, ByteBudget budget, ProgressBar progressBar,
+                        Cancellation cancellation, boolean failFast, Watchdog watchdog, Duration assetTimeout) {
+        this.convertExecutor = convertExecutor;
+        this.audioExecutor = audioExecutor;
+        this.budget = budget;
+        this.progressBar = progressBar;
+        this.cancellation = cancellation;
+        this.failFast = failFast;
+        this.watchdog = watchdog;
+        this.assetTimeout = assetTimeout;
+    }
+
+    /**
+     * Process all assets of the pack.
+     *
+     * @param pack           pack structure, without assets content
+     * @param source         source assets
+     * @param output         output pack, may be null in check mode
+     * @param imageProcessor image conversion
+     * @param audioProcessor audio conversion
+     * @return true if an asset was modified
+     */
+    public boolean run(StoryPack pack, AssetReader source, PackOutput output,
+                       Function<MediaAsset, byte[]> imageProcessor, Function<MediaAsset, byte[]> audioProcessor) throws IOException {
+        // Same asset may be referenced by many nodes : process it once
+        Map<String, List<MediaAsset>> images = groupByName(pack.assets(true));
+        Map<String, List<MediaAsset>> audios = groupByName(pack.assets(false));
+        progressBar.maxHint((long) images.size() + audios.size());
+
+        AtomicBoolean modification = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<String> unchanged = new ArrayList<>();
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+
+        ExecutorService writer = Executors.newSingleThreadExecutor(Threads.blocking("spc-writer"));
+        try {
+            for (Map.Entry<String, List<MediaAsset>> e : concat(images, audios).entrySet()) {
+                if (failure.get() != null || cancellation.isCancelled()) {
+                    break;
+                }
+                List<MediaAsset> group = e.getValue();
+                boolean image = images.containsKey(e.getKey());
+                Function<MediaAsset, byte[]> processor = image ? imageProcessor : audioProcessor;
+                MediaAssetType targetType = image ? MediaAssetType.BMP : MediaAssetType.MP3;
+                MediaAsset asset = group.get(0);
+
+                // Read stage (backpressure on the conversion working set)
+                long reserved = MemoryGovernor.estimateAsset(asset.getType(), source.size(asset.getName()));
+                acquire(reserved);
+                // Check only : nothing to compare nor write
+                boolean inspectOnly = output == null && asset.isBound();
+                byte[] rawData = inspectOnly ? null : read(source, asset, reserved);
+
+                // Convert stage, abandoned if its scope is cancelled (fail-fast, timeout)
+                Cancellation assetScope = cancellation.child();
+                AtomicReference<Future<?>> deadline = new AtomicReference<>(CompletableFuture.completedFuture(null));
+                CompletableFuture<byte[]> convert = CompletableFuture.supplyAsync(() -> assetScope.call(() -> {
+                    // Deadline starts with the conversion, not in queue
+                    deadline.set(watchdog.watch(assetScope, assetTimeout, "Asset " + asset.getName()));
+                    // Once abandoned, a stuck in-process decoder keeps its thread but not its slot in the pool
+                    assetScope.onCancel(TaskSlot.releaser());
+                    return processor.apply(asset);
+                }), image ? convertExecutor : audioExecutor);
+                assetScope.onCancel(() -> convert.completeExceptionally(assetScope.getCause()));
+
+                // Then write stage
+                inFlight.add(convert
+                        .thenAcceptAsync(converted -> {
+                            cancellation.throwIfCancelled();
+                            progressBar.setExtraMessage(asset.getName());
+                            if (inspectOnly) {
+                                return;
+                            }
+                            if (!Arrays.equals(converted, rawData)) {
+                                String previousName = asset.getName();
+                                asset.setRawData(converted);
+                                // force type
+                                asset.changeType(targetType);
+                                group.forEach(a -> {
+                                    a.setType(asset.getType());
+                                    a.setName(asset.getName());
+                                });
+                                log.debug("Asset {} converted into {}", previousName, asset.getName());
+                                modification.set(true);
+                            } else if (!modification.get()) {
+                                // Written later, only if the pack is modified
+                                unchanged.add(asset.getName());
+                                return;
+                            }
+                            write(output, asset.getName(), converted);
+                        }, writer)
+                        .whenComplete((v, ex) -> {
+                            deadline.get().cancel(false);
+                            cancellation.remove(assetScope);
+                            asset.setRawData(null);
+                            budget.release(reserved);
+                            if (ex != null && failure.compareAndSet(null, unwrap(ex))) {
+                                if (failFast) {
+                                    // Skip queued conversions, kill running FFmpeg jobs
+                                    log.debug("Asset {} failed, cancelling pack", asset.getName());
+                                    cancellation.cancel(failure.get());
+                                }
+                            }
+                            progressBar.step();
+                        }));
+            }
+        } finally {
+            // Output is closed by the caller : wait for the assets in flight, even on failure. Once cancelled, their
+            // conversions are abandoned at once, and only a running write is waited for
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).exceptionally(ex -> null).join();
+            writer.shutdown();
+        }
+
+        Throwable t = failure.get() != null ? failure.get() : cancellation.getCause();
+        if (t instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) t).getCause();
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t != null) {
+            throw new StoryTellerException(t);
+        }
+
+        if (modification.get() && output != null) {
+            // Copy unchanged assets met before the first modification
+            for (String assetName : unchanged) {
+                output.writeAsset(assetName, source.read(assetName));
+            }
+        }
+        return modification.get();
+    }
+
+    /** Load an asset, releasing its reservation on failure. */
+    private byte[] read(AssetReader source, MediaAsset asset, long reserved) throws IOException {
+        byte[] rawData;
+        try {
+            rawData = source.read(asset.getName());
+        } catch (IOException ex) {
+            budget.release(reserved);
+            throw ex;
+        }
+        asset.setRawData(rawData);
+        return rawData;
+    }
+
+    private void acquire(long size) {
+        try {
+            budget.acquire(size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoryTellerException("Interrupted while waiting for assets in flight", e);
+        }
+    }
+
+    private static void write(PackOutput output, String assetName, byte[] rawData) {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.writeAsset(assetName, rawData);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    private static Map<String, List<MediaAsset>> groupByName(List<MediaAsset> assets) {
+        Map<String, List<MediaAsset>> byName = new LinkedHashMap<>();
+        for (MediaAsset a : assets) {
+            byName.computeIfAbsent(a.getName(), k -> new ArrayList<>()).add(a);
+        }
+        return byName;
+    }
+
+    private static Map<String, List<MediaAsset>> concat(Map<String, List<MediaAsset>> m1, Map<String, List<MediaAsset>> m2) {
+        Map<String, List<MediaAsset>> all = new LinkedHashMap<>(m1);
+        all.putAll(m2);
+        return all;
+    }
+}
@@ -6,36 +6,37 @@ import lombok.extern.slf4j.Slf4j;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
 import net.bramp.ffmpeg.job.FFmpegJob;
 import org.studio.checker.FFmpegCreator;
+import org.studio.checker.engine.Cancellation;
+import org.studio.checker.engine.Threads;
 import studio.core.v1.model.asset.MediaAsset;
 import studio.core.v1.model.asset.MediaAssetType;
 import studio.core.v1.utils.audio.AudioConversion;
 import studio.core.v1.utils.audio.ID3Tags;
+import studio.core.v1.utils.io.IoThrottle;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 @RequiredArgsConstructor
 @Slf4j
 public class AudioProcessor implements Function<MediaAsset, byte[]> {
 
-    private static AudioProcessor singleton;
-
     private final boolean repair;
     private final boolean compress;
-
-    public static AudioProcessor getProcessor(boolean repair, boolean compress) {
-        if (singleton == null) {
-            singleton = new AudioProcessor(repair, compress);
-        }
-        return singleton;
-    }
+    private final FFmpegCreator ffmpegCreator;
+    /** Platform threads of CPU-bound work (LAME encoding). */
+    private final Executor cpuExecutor;
+    /** I/O limits of the temp files. */
+    private final IoThrottle throttle;
 
     @SneakyThrows
     public byte[] apply(MediaAsset mediaAsset) {
@@ -81,29 +82,60 @@ public class AudioProcessor implements Function<MediaAsset, byte[]> {
         return rawData;
     }
 
-    private static byte[] anyToMp3(byte[] rawData) throws IOException, UnsupportedAudioFileException {
-        File inputTempFile = File.createTempFile("spc_audio_inputTempFile", ".audio");
-        try (FileOutputStream fos = new FileOutputStream(inputTempFile)) {
-            fos.write(rawData);
-            fos.flush();
+    private byte[] anyToMp3(byte[] rawData) throws IOException, UnsupportedAudioFileException {
+        // Temp files are deleted with the pack if cancelled
+        Cancellation cancellation = Cancellation.current();
+        Path inputTempFile = cancellation.trackTemp(Files.createTempFile("spc_audio_inputTempFile", ".audio"));
+        Path outputTempFile = cancellation.trackTemp(Files.createTempFile("spc_audio_outputTempFile", MediaAssetType.MP3.firstExtension()));
+        try {
+            // Need to flush the data in a file in order to provide it to ffmpeg
+            // Temp files traffic : written here and read by FFmpeg, written by FFmpeg and read here
+            throttle.acquire(rawData.length);
+            Files.write(inputTempFile, rawData);
+            throttle.acquire(rawData.length);
 
-            File outputTempFile = File.createTempFile("spc_audio_outputTempFile", MediaAssetType.MP3.firstExtension());
             FFmpegBuilder builder = new FFmpegBuilder()
-                    .setInput(inputTempFile.getAbsolutePath())
-                    .addOutput(outputTempFile.getAbsolutePath())
+                    .setInput(inputTempFile.toAbsolutePath().toString())
+                    .addOutput(outputTempFile.toAbsolutePath().toString())
                     .setAudioChannels(AudioConversion.CHANNELS)
                     .setAudioSampleRate(Math.round(AudioConversion.MP3_SAMPLE_RATE))
                     .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL)
                     .done();
 
-            FFmpegJob job = FFmpegCreator.getFFmpegExecutor().createJob(builder);
+            cancellation.throwIfCancelled();
+            FFmpegJob job = ffmpegCreator.getFFmpegExecutor().createJob(builder);
             job.run();
+            cancellation.throwIfCancelled();
             if (FFmpegJob.State.FINISHED.equals(job.getState())) {
-                return Files.readAllBytes(outputTempFile.toPath());
+                long outputSize = Files.size(outputTempFile);
+                throttle.acquire(outputSize);
+                throttle.acquire(outputSize);
+                return Files.readAllBytes(outputTempFile);
             } else {
-                return AudioConversion.anyToMp3(rawData);
+                return encodeMp3(rawData);
             }
+        } finally {
+            cancellation.deleteTemp(inputTempFile);
+            cancellation.deleteTemp(outputTempFile);
         }
     }
 
+    /** LAME encoding, on platform threads. */
+    @SneakyThrows
+    private byte[] encodeMp3(byte[] rawData) {
+        if (!Threads.isCurrentVirtual()) {
+            return AudioConversion.anyToMp3(rawData);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return AudioConversion.anyToMp3(rawData);
+                } catch (IOException | UnsupportedAudioFileException e) {
+                    throw new CompletionException(e);
+                }
+            }, cpuExecutor).join();
+        } catch (CompletionException e) {
+            throw e.getCause();
+        }
+    }
 }
@@ -19,17 +19,8 @@ public class ImageProcessor implements Function<MediaAsset, byte[]> {
     private static final int WIDTH = 320;
     private static final int HEIGHT = 240;
 
-    private static ImageProcessor singleton;
-
     private final boolean compress;
 
-    public static ImageProcessor getProcessor(boolean compress) {
-        if (singleton == null) {
-            singleton = new ImageProcessor(compress);
-        }
-        return singleton;
-    }
-
     @SneakyThrows
     @Override
     public byte[] apply(MediaAsset mediaAsset) {
@@ -0,0 +1,131 @@
+package org.studio.checker.processor;
+
+import lombok.extern.slf4j.Slf4j;
+import studio.core.v1.utils.audio.AudioConversion;
+import studio.core.v1.utils.image.ImageConversion;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.ASSETS_DIR;
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.STORY_JSON;
+
+/**
+ * Warm up the in-process conversions on synthetic assets : ImageIO and color profiles, quantizer, sound providers
+ * and LAME encoder are initialized and compiled before the first real pack.
+ * <p>
+ * A synthetic pack is also provided, for a training run loading the classes of a real run (class data sharing).
+ */
+@Slf4j
+public class Warmup {
+
+    private static final int ITERATIONS = 3;
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int SAMPLE_RATE = 22050;
+    private static final String IMAGE = "warmup.png";
+    private static final String AUDIO = "warmup.wav";
+    private static final String ENCODED_AUDIO = "warmup.mp3";
+    private static final String STORY = "{\"format\": \"v1\", \"title\": \"Warm-up\", \"version\": 1, "
+            + "\"description\": \"Synthetic pack\", \"nightModeAvailable\": false, \"stageNodes\": [{"
+            + "\"uuid\": \"00000000-0000-0000-0000-000000000001\", \"image\": \"" + IMAGE + "\", \"audio\": \"%s\", "
+            + "\"okTransition\": null, \"homeTransition\": null, \"controlSettings\": {\"wheel\": false, \"ok\": true, "
+            + "\"home\": true, \"pause\": false, \"autojump\": false}, \"squareOne\": true, \"type\": \"stage\", "
+            + "\"name\": \"Warm-up\"}], \"actionNodes\": []}";
+
+    private Warmup() {
+        throw new IllegalArgumentException("Utility class");
+    }
+
+    public static void run() {
+        long start = System.currentTimeMillis();
+        try {
+            byte[] png = syntheticImage();
+            byte[] wav = syntheticAudio();
+            for (int i = 0; i < ITERATIONS; i++) {
+                ImageConversion.anyToRLECompressedBitmap(png);
+                AudioConversion.anyToMp3(wav);
+            }
+            log.info("Warmed up in {} ms", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Warm-up failed", e);
+        }
+    }
+
+    /** Write a one node pack, with uncompressed assets to convert. */
+    public static Path writePack(Path zipPath) throws IOException {
+        return writePack(zipPath, AUDIO, syntheticAudio());
+    }
+
+    /**
+     * Write a one node pack for a training run : the image is converted, the audio is already encoded in MP3 (by
+     * LAME) and only checked, so FFmpeg is not needed.
+     */
+    public static Path writeTrainingPack(Path zipPath) throws IOException {
+        try {
+            return writePack(zipPath, ENCODED_AUDIO, AudioConversion.anyToMp3(syntheticAudio()));
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unable to encode synthetic audio", e);
+        }
+    }
+
+    private static Path writePack(Path zipPath, String audio, byte[] audioData) throws IOException {
+        try (OutputStream os = Files.newOutputStream(zipPath);
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            writeEntry(zos, STORY_JSON, String.format(STORY, audio).getBytes(StandardCharsets.UTF_8));
+            writeEntry(zos, ASSETS_DIR + IMAGE, syntheticImage());
+            writeEntry(zos, ASSETS_DIR + audio, audioData);
+        }
+        return zipPath;
+    }
+
+    private static void writeEntry(ZipOutputStream zos, String name, byte[] data) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    /** Gradient with more colors than the 4-bits palette. */
+    private static byte[] syntheticImage() throws IOException {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, (x * 255 / WIDTH) << 16 | (y * 255 / HEIGHT) << 8 | ((x + y) & 0xFF));
+            }
+        }
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            ImageIO.write(img, "PNG", baos);
+            return baos.toByteArray();
+        }
+    }
+
+    /** One second of 440 Hz sine, as 16-bits mono WAV. */
+    private static byte[] syntheticAudio() throws IOException {
+        byte[] pcm = new byte[SAMPLE_RATE * 2];
+        for (int i = 0; i < SAMPLE_RATE; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE) * Short.MAX_VALUE / 2);
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+        try (AudioInputStream ais = new AudioInputStream(new ByteArrayInputStream(pcm), format, SAMPLE_RATE);
+             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            AudioSystem.write(ais, AudioFileFormat.Type.WAVE, baos);
+            return baos.toByteArray();
+        }
+    }
+}
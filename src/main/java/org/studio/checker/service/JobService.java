@@ -0,0 +1,428 @@
+package org.studio.checker.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.studio.checker.CheckMode;
+import org.studio.checker.CheckResult;
+import studio.core.v1.utils.io.IoThrottle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Local HTTP service, sharing one warm engine between clients.
+ * <ul>
+ * <li>{@code POST /jobs?mode=check|repair|compress&path=sub/pack.zip} : queue the pack at this path, inside the served
+ * folder</li>
+ * <li>{@code POST /jobs?mode=...} with a zip body : queue the uploaded pack, up to a maximum size</li>
+ * <li>{@code GET /jobs/{id}} : job status and result</li>
+ * <li>{@code GET /jobs/{id}/output} : repaired pack of an uploaded job</li>
+ * <li>{@code GET /status} : jobs count by status, free capacity, and live I/O throttle state</li>
+ * </ul>
+ * Jobs queued or running are bounded : when full, new jobs are rejected with 429 (Too Many Requests). Paths outside of
+ * the served folder, or without one, are rejected with 403 (Forbidden), and larger uploads with 413 (Payload Too
+ * Large).
+ */
+@Slf4j
+public class JobService implements AutoCloseable {
+
+    private static final int ACCEPTED = 202;
+    private static final int FORBIDDEN = 403;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    // Finished jobs kept for status requests
+    private static final int RETAINED_JOBS = 1000;
+    private static final String UPLOAD = ".zip";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** Pack processing, by the engine. */
+    @FunctionalInterface
+    public interface Submitter {
+        /**
+         * @param onStart to call when the pack processing starts
+         */
+        CompletableFuture<CheckResult> submit(Path packPath, Path outputDir, CheckMode mode, Runnable onStart);
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, DONE
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Job {
+        private final String id;
+        private final CheckMode mode;
+        private final String input;
+        private final boolean upload;
+        private volatile Status status = Status.QUEUED;
+        private String output;
+        private CheckResult.CheckResultEnum result;
+        private String message;
+        private String title;
+        private Short version;
+        private String uuid;
+        private Boolean thumbnail;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService requestExecutor = Executors.newFixedThreadPool(2);
+    private final Submitter submitter;
+    private final Path spoolDir;
+    /** Folder of the packs of path jobs, real path. Null if none. */
+    private final Path root;
+    private final long maxUpload;
+    private final Semaphore capacity;
+    private final IoThrottle ioThrottle;
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            if (size() > RETAINED_JOBS && eldest.getValue().getStatus() == Status.DONE) {
+                discard(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    });
+
+    /**
+     * @param address  listening address
+     * @param capacity maximum jobs queued or running
+     * @param spoolDir   folder of the uploaded packs and their outputs
+     * @param root       folder of the packs of path jobs, null to only accept uploads
+     * @param maxUpload  maximum size of an uploaded pack, in bytes
+     * @param ioThrottle I/O limits of the engine, for the status
+     */
+    public JobService(InetSocketAddress address, int capacity, Path spoolDir, Path root, long maxUpload,
+                      IoThrottle ioThrottle, Submitter submitter) throws IOException {
+        this.submitter = submitter;
+        this.spoolDir = Files.createDirectories(spoolDir);
+        this.root = root != null ? root.toRealPath() : null;
+        this.maxUpload = maxUpload;
+        this.capacity = new Semaphore(capacity);
+        this.ioThrottle = ioThrottle;
+        this.server = HttpServer.create(address, 0);
+        // Requests are short : processing is done by the engine
+        server.setExecutor(requestExecutor);
+        server.createContext("/jobs", this::handle);
+        server.createContext("/status", this::handleStatus);
+        server.start();
+        log.info("Listening on http://{}:{}/jobs, spooling uploads to {}", address.getHostString(), getPort(), spoolDir);
+    }
+
+    /** Listening port, chosen by the system when 0 was asked. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] segments = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+            String method = exchange.getRequestMethod();
+            if ("POST".equals(method) && segments.length == 2) {
+                submit(exchange);
+            } else if ("GET".equals(method) && segments.length == 3) {
+                status(exchange, segments[2]);
+            } else if ("GET".equals(method) && segments.length == 4 && "output".equals(segments[3])) {
+                output(exchange, segments[2]);
+            } else {
+                error(exchange, 404, "Unknown resource");
+            }
+        } catch (RuntimeException e) {
+            log.error("Request failed", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                json(exchange, 200, status());
+            } else {
+                error(exchange, 404, "Unknown resource");
+            }
+        } catch (RuntimeException e) {
+            log.error("Request failed", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Map<String, Object> status() {
+        Map<Status, Long> counts = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            counts.put(status, 0L);
+        }
+        synchronized (jobs) {
+            jobs.values().forEach(job -> counts.merge(job.getStatus(), 1L, Long::sum));
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobs", counts);
+        status.put("capacity", capacity.availablePermits());
+        status.put("io", ioStatus(ioThrottle));
+        return status;
+    }
+
+    /** Live state of the I/O throttle. */
+    static Map<String, Object> ioStatus(IoThrottle throttle) {
+        Map<String, Object> io = new LinkedHashMap<>();
+        io.put("throttling", throttle.isThrottling());
+        io.put("bytes", throttle.getBytes());
+        io.put("ops", throttle.getOps());
+        io.put("throttledOps", throttle.getWaits());
+        io.put("throttledMillis", throttle.getWaitedMillis());
+        if (throttle.getBytesPerSecond() > 0) {
+            io.put("bytesPerSecond", throttle.getBytesPerSecond());
+            io.put("availableBytes", throttle.getAvailableBytes());
+        }
+        if (throttle.getOpsPerSecond() > 0) {
+            io.put("opsPerSecond", throttle.getOpsPerSecond());
+            io.put("availableOps", throttle.getAvailableOps());
+        }
+        return io;
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        Map<String, String> params = query(exchange);
+        CheckMode mode;
+        try {
+            mode = CheckMode.valueOf(params.getOrDefault("mode", "check").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, "Unknown mode " + params.get("mode"));
+            return;
+        }
+        boolean upload = !params.containsKey("path");
+        Path packPath = null;
+        if (upload) {
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (length != null && Long.parseLong(length) > maxUpload) {
+                error(exchange, PAYLOAD_TOO_LARGE, "Pack larger than " + maxUpload + " bytes");
+                return;
+            }
+        } else {
+            String path = params.get("path");
+            try {
+                packPath = served(path);
+            } catch (InvalidPathException e) {
+                error(exchange, 400, "Invalid path " + path);
+                return;
+            }
+            if (packPath == null) {
+                error(exchange, FORBIDDEN, "Path outside of the served folder : " + path);
+                return;
+            }
+            if (!Files.isRegularFile(packPath)) {
+                error(exchange, 400, "No pack at " + path);
+                return;
+            }
+        }
+        if (!capacity.tryAcquire()) {
+            // Backpressure : client retries later
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            error(exchange, TOO_MANY_REQUESTS, "Job queue is full");
+            return;
+        }
+        String id = UUID.randomUUID().toString();
+        Path outputDir;
+        try {
+            if (upload) {
+                packPath = spoolDir.resolve(id + UPLOAD);
+                boolean complete;
+                try (InputStream body = exchange.getRequestBody()) {
+                    complete = copy(body, packPath, maxUpload);
+                }
+                if (!complete) {
+                    // Length not announced, or wrong
+                    Files.deleteIfExists(packPath);
+                    capacity.release();
+                    error(exchange, PAYLOAD_TOO_LARGE, "Pack larger than " + maxUpload + " bytes");
+                    return;
+                }
+                outputDir = spoolDir;
+            } else {
+                outputDir = packPath.toAbsolutePath().getParent();
+            }
+        } catch (IOException | RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+        Job job = new Job(id, mode, packPath.toString(), upload);
+        jobs.put(id, job);
+        CompletableFuture<CheckResult> future;
+        try {
+            future = submitter.submit(packPath, outputDir, mode, () -> job.setStatus(Status.RUNNING));
+        } catch (RuntimeException e) {
+            // Rejected by the engine, e.g. when stopping
+            jobs.remove(id);
+            discard(job);
+            capacity.release();
+            log.warn("Job {} rejected", id, e);
+            error(exchange, SERVICE_UNAVAILABLE, "Job rejected : " + e.getMessage());
+            return;
+        }
+        future.whenComplete((result, ex) -> {
+            finish(job, result, ex);
+            capacity.release();
+        });
+        log.info("Job {} queued : {} {}", id, mode, packPath.getFileName());
+        json(exchange, ACCEPTED, job);
+    }
+
+    /**
+     * Pack of a path job, relative to the served folder, or null if outside of it : links are followed before the
+     * check.
+     */
+    private Path served(String path) {
+        if (root == null) {
+            return null;
+        }
+        Path packPath = root.resolve(path).normalize();
+        if (!packPath.startsWith(root)) {
+            return null;
+        }
+        try {
+            return !Files.exists(packPath) || packPath.toRealPath().startsWith(root) ? packPath : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Copy a stream to a file, up to a maximum size.
+     *
+     * @return false if the stream is larger : the file is then incomplete
+     */
+    private static boolean copy(InputStream in, Path target, long max) throws IOException {
+        long copied = 0;
+        try (OutputStream os = Files.newOutputStream(target)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                copied += n;
+                if (copied > max) {
+                    return false;
+                }
+                os.write(buffer, 0, n);
+            }
+        }
+        return true;
+    }
+
+    private static void finish(Job job, CheckResult result, Throwable ex) {
+        if (result != null) {
+            job.setResult(result.getResult());
+            job.setOutput(result.getPath().toString());
+            Throwable cause = result.getException();
+            job.setMessage(cause != null ? cause.getMessage() : result.getMessage());
+            if (result.isSummary()) {
+                job.setTitle(result.getTitle());
+                job.setVersion(result.getVersion());
+                job.setUuid(result.getUuid() != null ? result.getUuid().toString() : null);
+                job.setThumbnail(result.isThumbnail());
+            }
+        } else {
+            job.setResult(CheckResult.CheckResultEnum.KO);
+            job.setMessage(ex != null ? ex.getMessage() : null);
+        }
+        job.setStatus(Status.DONE);
+        log.info("Job {} done : {}", job.getId(), job.getResult());
+    }
+
+    /** Delete the spooled files of a forgotten job. */
+    private static void discard(Job job) {
+        if (!job.isUpload()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(job.getInput()));
+            if (job.getOutput() != null) {
+                Files.deleteIfExists(Paths.get(job.getOutput()));
+            }
+        } catch (IOException e) {
+            log.warn("Unable to delete files of job {}", job.getId(), e);
+        }
+    }
+
+    private void status(HttpExchange exchange, String id) throws IOException {
+        Job job = jobs.get(id);
+        if (job == null) {
+            error(exchange, 404, "Unknown job " + id);
+        } else {
+            json(exchange, 200, job);
+        }
+    }
+
+    private void output(HttpExchange exchange, String id) throws IOException {
+        Job job = jobs.get(id);
+        if (job == null || !job.isUpload() || job.getStatus() != Status.DONE || job.getOutput() == null) {
+            error(exchange, 404, "No output for job " + id);
+            return;
+        }
+        Path output = Paths.get(job.getOutput());
+        exchange.getResponseHeaders().set("Content-Type", "application/zip");
+        exchange.sendResponseHeaders(200, Files.size(output));
+        try (OutputStream os = exchange.getResponseBody()) {
+            Files.copy(output, os);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(param.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static void error(HttpExchange exchange, int code, String message) throws IOException {
+        json(exchange, code, Map.of("error", message));
+    }
+
+    private static void json(HttpExchange exchange, int code, Object body) throws IOException {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /** Stop accepting jobs. */
+    @Override
+    public void close() {
+        server.stop(1);
+        requestExecutor.shutdown();
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package studio.core.v1.exception;
+
+/**
+ * A conversion (or a whole pack) exceeded its deadline.
+ */
+public class ConversionTimeoutException extends StoryTellerException {
+
+    private static final long serialVersionUID = -2319577604457328190L;
+
+    public ConversionTimeoutException(String message) {
+        super(message);
+    }
+
+    /** Find a timeout in the causes chain. */
+    public static boolean isTimeout(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof ConversionTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -8,21 +8,31 @@ package studio.core.v1.model.asset;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import studio.core.v1.service.AssetReader;
 import studio.core.v1.utils.security.SecurityUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
 @Getter
 @Setter
-@EqualsAndHashCode(exclude = "rawData")
-@ToString(exclude = "rawData")
+@EqualsAndHashCode(exclude = {"rawData", "source"})
+@ToString(exclude = {"rawData", "source"})
 public class MediaAsset {
 
     private MediaAssetType type;
     private byte[] rawData;
     private String name;
+    /** Opened pack the content is read from on demand, while not loaded. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AssetReader source;
 
     public MediaAsset(MediaAssetType type, byte[] rawData) {
         this.type = type;
@@ -40,8 +50,40 @@ public class MediaAsset {
         return name;
     }
 
+    /** Read the content on demand from an opened pack, until loaded or renamed. */
+    public void bind(AssetReader source) {
+        this.source = source;
+    }
+
+    /** Content is not loaded, but read on demand from an opened pack. */
+    public boolean isBound() {
+        return rawData == null && source != null;
+    }
+
+    /** Loaded content, or else read from its pack : not kept, only held by the caller while needed. */
+    public byte[] getRawData() {
+        byte[] data = rawData;
+        AssetReader reader = source;
+        if (data != null || reader == null) {
+            return data;
+        }
+        try {
+            return reader.read(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Renamed content is no more the one of its pack. */
+    public void setName(String name) {
+        if (!Objects.equals(this.name, name)) {
+            source = null;
+        }
+        this.name = name;
+    }
+
     public void updateName() {
-        this.name = SecurityUtils.sha1Hex(rawData) + type.firstExtension();
+        setName(SecurityUtils.sha1Hex(rawData) + type.firstExtension());
     }
 
     private int dotIndex() {
@@ -7,8 +7,6 @@
 package studio.core.v1.model.metadata;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -34,13 +32,6 @@ public class StoryPackMetadata {
     // 1st stageNode uuid
     private UUID uuidFirst;
 
-    // Extract nested : stageNodes[0].uuid
-    @JsonProperty("stageNodes")
-    private void unpackUuidFirst(JsonNode stageNodes) {
-        String s = stageNodes.get(0).get("uuid").asText();
-        uuidFirst = (s == null) ? null : UUID.fromString(s);
-    }
-
     public StoryPackMetadata(PackFormat packFormat) {
         this.packFormat = packFormat;
     }
@@ -0,0 +1,15 @@
+package studio.core.v1.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * On-demand access to the assets of an opened pack.
+ */
+public interface AssetReader extends Closeable {
+
+    /** Uncompressed size of an asset, or -1 if unknown. */
+    long size(String assetName) throws IOException;
+
+    byte[] read(String assetName) throws IOException;
+}
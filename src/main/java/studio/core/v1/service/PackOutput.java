@@ -0,0 +1,18 @@
+package studio.core.v1.service;
+
+import studio.core.v1.model.StoryPack;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Incremental pack writing : assets are written as soon as they are ready, the story descriptor last.
+ */
+public interface PackOutput extends Closeable {
+
+    /** Write an asset. Same asset written twice is ignored. Thread-safe. */
+    void writeAsset(String assetName, byte[] rawData) throws IOException;
+
+    /** Write the story descriptor, once all assets are written. */
+    void finish(StoryPack pack, boolean enriched) throws IOException;
+}
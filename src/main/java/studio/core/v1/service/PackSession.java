@@ -0,0 +1,21 @@
+package studio.core.v1.service;
+
+import java.io.IOException;
+
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.model.metadata.StoryPackMetadata;
+
+/**
+ * An opened pack : its source is opened and its story descriptor parsed once, for metadata, structure and assets.
+ */
+public interface PackSession extends AssetReader {
+
+    /** Pack metadata, or null if there is no story descriptor. */
+    StoryPackMetadata getMetadata() throws IOException;
+
+    /**
+     * Pack structure (nodes, thumbnail), or null if there is no story descriptor. Assets content is not loaded, but read
+     * on demand while the session is open.
+     */
+    StoryPack getStructure() throws IOException;
+}
@@ -11,4 +11,7 @@ public interface StoryPackReader {
     StoryPackMetadata readMetadata(Path path) throws IOException;
 
     StoryPack read(Path path) throws IOException;
+
+    /** Open the pack once, for its metadata, structure and assets. */
+    PackSession open(Path path) throws IOException;
 }
@@ -8,4 +8,7 @@ import studio.core.v1.model.StoryPack;
 public interface StoryPackWriter {
 
     void write(StoryPack pack, Path path, boolean enriched) throws IOException;
+
+    /** Create a pack to be written incrementally. */
+    PackOutput create(Path path) throws IOException;
 }
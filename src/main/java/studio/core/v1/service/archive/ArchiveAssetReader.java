@@ -0,0 +1,130 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.service.archive;
+
+import studio.core.v1.service.AssetReader;
+import studio.core.v1.utils.io.FileUtils;
+import studio.core.v1.utils.io.IoThrottle;
+import studio.core.v1.utils.io.MappedZipFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Read assets one by one from a zip archive. Entries can be read concurrently.
+ * <p>
+ * The archive is memory-mapped, and entries read without lock. A {@link ZipFile} is used beyond 2 GB, and on Windows
+ * where a mapped file stays locked until garbage collected, and could not be replaced by its output.
+ */
+public class ArchiveAssetReader implements AssetReader {
+
+    /** Mapped archive, or null when read through {@link #zipFile}. */
+    private final MappedZipFile mappedZip;
+    private final ZipFile zipFile;
+    private final IoThrottle throttle;
+
+    /**
+     * @param throttle I/O limits of the reads
+     */
+    public ArchiveAssetReader(Path zipPath, IoThrottle throttle) throws IOException {
+        this.throttle = throttle;
+        if (!FileUtils.isWindows() && Files.size(zipPath) <= MappedZipFile.MAX_SIZE) {
+            this.mappedZip = new MappedZipFile(zipPath);
+            this.zipFile = null;
+        } else {
+            this.mappedZip = null;
+            this.zipFile = new ZipFile(zipPath.toFile());
+        }
+    }
+
+    @Override
+    public long size(String assetName) throws IOException {
+        String name = ArchiveStoryPackReader.ASSETS_DIR + assetName;
+        if (mappedZip != null) {
+            return mappedEntry(name).getSize();
+        }
+        ZipEntry entry = entry(name);
+        return entry.getSize() >= 0 ? entry.getSize() : entry.getCompressedSize();
+    }
+
+    @Override
+    public byte[] read(String assetName) throws IOException {
+        String name = ArchiveStoryPackReader.ASSETS_DIR + assetName;
+        return mappedZip != null ? read(mappedEntry(name)) : read(entry(name));
+    }
+
+    /** Read any entry of the archive, or null if absent. */
+    byte[] readEntry(String name) throws IOException {
+        if (mappedZip != null) {
+            MappedZipFile.Entry entry = mappedZip.getEntry(name);
+            return entry != null ? read(entry) : null;
+        }
+        ZipEntry entry = zipFile.getEntry(name);
+        return entry != null ? read(entry) : null;
+    }
+
+    /** Stream any entry of the archive, or null if absent. */
+    InputStream openEntry(String name) throws IOException {
+        if (mappedZip != null) {
+            MappedZipFile.Entry entry = mappedZip.getEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            throttle.acquire(entry.getCompressedSize());
+            return mappedZip.getInputStream(entry);
+        }
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        throttle.acquire(entry.getCompressedSize());
+        return zipFile.getInputStream(entry);
+    }
+
+    private byte[] read(MappedZipFile.Entry entry) throws IOException {
+        // Stored size is what is read from storage
+        throttle.acquire(entry.getCompressedSize());
+        return mappedZip.read(entry);
+    }
+
+    private byte[] read(ZipEntry entry) throws IOException {
+        // Stored size is what is read from storage
+        throttle.acquire(entry.getCompressedSize());
+        try (InputStream is = zipFile.getInputStream(entry)) {
+            return is.readAllBytes();
+        }
+    }
+
+    private MappedZipFile.Entry mappedEntry(String name) throws NoSuchFileException {
+        MappedZipFile.Entry entry = mappedZip.getEntry(name);
+        if (entry == null) {
+            throw new NoSuchFileException(name);
+        }
+        return entry;
+    }
+
+    private ZipEntry entry(String name) throws NoSuchFileException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            throw new NoSuchFileException(name);
+        }
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mappedZip != null) {
+            mappedZip.close();
+        } else {
+            zipFile.close();
+        }
+    }
+}
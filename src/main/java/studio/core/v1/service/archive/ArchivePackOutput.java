@@ -0,0 +1,108 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.service.archive;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.service.PackOutput;
+import studio.core.v1.utils.io.IoThrottle;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Zip archive written as a stream. The file is only created on first write.
+ */
+public class ArchivePackOutput implements PackOutput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path zipPath;
+    private final OutputStream target;
+    private final ObjectWriter objectWriter;
+    private final IoThrottle throttle;
+
+    private final Set<String> written = new HashSet<>();
+    private ZipOutputStream zos;
+
+    /**
+     * @param throttle I/O limits of the file writes
+     */
+    public ArchivePackOutput(Path zipPath, ObjectWriter objectWriter, IoThrottle throttle) {
+        this.zipPath = zipPath;
+        this.target = null;
+        this.objectWriter = objectWriter;
+        this.throttle = throttle;
+    }
+
+    /** Write to a stream (e.g. a pipe), left open once finished. */
+    public ArchivePackOutput(OutputStream target, ObjectWriter objectWriter) {
+        this.zipPath = null;
+        this.target = target;
+        this.objectWriter = objectWriter;
+        this.throttle = null;
+    }
+
+    private ZipOutputStream zip() throws IOException {
+        if (zos == null) {
+            // Written to storage by blocks, within the I/O limits
+            OutputStream os = target != null ? target : throttle.wrap(Files.newOutputStream(zipPath));
+            zos = new ZipOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+            zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.ASSETS_DIR));
+            zos.closeEntry();
+        }
+        return zos;
+    }
+
+    @Override
+    public synchronized void writeAsset(String assetName, byte[] rawData) throws IOException {
+        if (written.add(assetName)) {
+            writeEntry(ArchiveStoryPackReader.ASSETS_DIR + assetName, rawData);
+        }
+    }
+
+    @Override
+    public synchronized void finish(StoryPack pack, boolean enriched) throws IOException {
+        ArchiveStoryPackWriter.prepare(pack);
+        // Add story descriptor file: story.json
+        ZipOutputStream zip = zip();
+        zip.putNextEntry(new ZipEntry(ArchiveStoryPackReader.STORY_JSON));
+        objectWriter.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(zip, pack);
+        zip.closeEntry();
+        // Add thumbnail file: thumbnail.png
+        if (pack.getEnriched() != null && pack.getEnriched().getThumbnail() != null) {
+            writeEntry(ArchiveStoryPackReader.THUMBNAIL_PNG, pack.getEnriched().getThumbnail());
+        }
+    }
+
+    private void writeEntry(String entryName, byte[] data) throws IOException {
+        ZipOutputStream zip = zip();
+        zip.putNextEntry(new ZipEntry(entryName));
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (zos == null) {
+            return;
+        }
+        if (target != null) {
+            zos.finish();
+            zos.flush();
+        } else {
+            zos.close();
+        }
+    }
+}
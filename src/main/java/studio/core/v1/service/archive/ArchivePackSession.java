@@ -0,0 +1,71 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.service.archive;
+
+import studio.core.v1.model.StageNode;
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.model.metadata.StoryPackMetadata;
+import studio.core.v1.service.PackSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.STORY_JSON;
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.THUMBNAIL_PNG;
+
+/**
+ * Zip archive opened once : the central directory is read on open, the story descriptor and thumbnail on first
+ * access. Metadata is streamed from the descriptor, up to its last metadata field, while the structure is bound from
+ * the whole descriptor : a pack rejected on its metadata is never fully parsed.
+ * <p>
+ * Assets of the structure are not loaded : their content is read from the session on demand, while it is open.
+ */
+public class ArchivePackSession extends ArchiveAssetReader implements PackSession {
+
+    private final ArchiveStoryPackReader reader;
+
+    private boolean metadataRead;
+    private StoryPackMetadata metadata;
+    private boolean parsed;
+    private StoryPack structure;
+
+    ArchivePackSession(Path zipPath, ArchiveStoryPackReader reader) throws IOException {
+        super(zipPath, reader.getThrottle());
+        this.reader = reader;
+    }
+
+    @Override
+    public synchronized StoryPackMetadata getMetadata() throws IOException {
+        if (!metadataRead) {
+            try (InputStream storyJson = openEntry(STORY_JSON)) {
+                if (storyJson != null) {
+                    metadata = reader.parseMetadata(storyJson);
+                    // set storypack uuid (if missing) from 1st node
+                    if (metadata.getUuid() == null) {
+                        metadata.setUuid(metadata.getUuidFirst());
+                    }
+                    metadata.setThumbnail(readEntry(THUMBNAIL_PNG));
+                }
+            }
+            metadataRead = true;
+        }
+        return metadata;
+    }
+
+    @Override
+    public synchronized StoryPack getStructure() throws IOException {
+        if (!parsed) {
+            byte[] storyJson = readEntry(STORY_JSON);
+            if (storyJson != null) {
+                structure = reader.readStructure(storyJson, readEntry(THUMBNAIL_PNG));
+                structure.getStageNodes().stream().flatMap(StageNode::assets).forEach(a -> a.bind(this));
+            }
+            parsed = true;
+        }
+        return structure;
+    }
+}
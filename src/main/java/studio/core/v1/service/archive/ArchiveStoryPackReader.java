@@ -9,87 +9,123 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import studio.core.v1.model.StageNode;
 import studio.core.v1.model.StoryPack;
+import studio.core.v1.model.asset.MediaAsset;
 import studio.core.v1.model.metadata.StoryPackMetadata;
-import studio.core.v1.service.PackFormat;
+import studio.core.v1.service.PackSession;
 import studio.core.v1.service.StoryPackReader;
+import studio.core.v1.utils.io.IoThrottle;
 import studio.core.v1.utils.stream.ThrowingConsumer;
 
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class ArchiveStoryPackReader implements StoryPackReader {
 
     public static final String THUMBNAIL_PNG = "thumbnail.png";
     public static final String STORY_JSON = "story.json";
+    public static final String ASSETS_DIR = "assets/";
 
     private final ObjectMapper objectMapper = new ObjectMapper().setSerializationInclusion(Include.NON_NULL);
+    private final IoThrottle throttle;
+
+    /** Reader without I/O limits. */
+    public ArchiveStoryPackReader() {
+        this(new IoThrottle(0, 0));
+    }
+
+    /**
+     * @param throttle I/O limits of the packs read
+     */
+    public ArchiveStoryPackReader(IoThrottle throttle) {
+        this.throttle = throttle;
+    }
 
     @Override
     public StoryPackMetadata readMetadata(Path zipPath) throws IOException {
         // Zip archive contains a json file and separate assets
-        try (FileSystem zipFs = FileSystems.newFileSystem(zipPath, ClassLoader.getSystemClassLoader())) {
-            // Story descriptor file: story.json
-            Path story = zipFs.getPath(STORY_JSON);
-            if (Files.notExists(story)) {
-                return null;
-            }
-            StoryPackMetadata spMeta = objectMapper.readValue(Files.readAllBytes(story), StoryPackMetadata.class);
-            spMeta.setPackFormat(PackFormat.ARCHIVE);
-            // set storypack uuid (if missing) from 1st node
-            if (spMeta.getUuid() == null) {
-                spMeta.setUuid(spMeta.getUuidFirst());
-            }
-            // Pack thumbnail
-            Path thumb = zipFs.getPath(THUMBNAIL_PNG);
-            if (Files.exists(thumb)) {
-                spMeta.setThumbnail(Files.readAllBytes(thumb));
-            }
-            return spMeta;
+        try (PackSession session = open(zipPath)) {
+            return session.getMetadata();
         }
     }
 
     @Override
     public StoryPack read(Path zipPath) throws IOException {
         // Zip archive contains a json file and separate assets
-        try (FileSystem zipFs = FileSystems.newFileSystem(zipPath, ClassLoader.getSystemClassLoader())) {
-            // Story descriptor file: story.json
-            Path story = zipFs.getPath(STORY_JSON);
-            if (Files.notExists(story)) {
+        try (PackSession session = open(zipPath)) {
+            StoryPack sp = session.getStructure();
+            if (sp == null) {
                 return null;
             }
-            StoryPack sp = objectMapper.readValue(Files.readAllBytes(story), StoryPack.class);
-            // Pack thumbnail
-            Path thumb = zipFs.getPath(THUMBNAIL_PNG);
-            if (Files.exists(thumb)) {
-                sp.getEnriched().setThumbnail(Files.readAllBytes(thumb));
-            }
-
-            // Make sure the first node is actually 'square one'
-            List<StageNode> stageNodes = sp.getStageNodes();
-            int i = indexOfFirst(stageNodes);
-            if (i > 0) { // move tagged node to 1st position
-                stageNodes.add(0, stageNodes.remove(i));
-            } else if (i < 0) { // tag 1st node
-                stageNodes.get(0).setSquareOne(Boolean.TRUE);
-            }
-            // set storypack uuid (if missing) from 1st node
-            if (sp.getUuid() == null) {
-                sp.setUuid(stageNodes.get(0).getUuid());
-            }
-            // Read assets (in parallel)
-            Path assetsDir = zipFs.getPath("assets/");
-            stageNodes.parallelStream().flatMap(StageNode::assets).forEach(ThrowingConsumer.unchecked(a -> {
-                a.guessType();
-                a.setRawData(Files.readAllBytes(assetsDir.resolve(a.getName())));
-            }));
+            // Read each distinct asset once (in parallel, from independent positions of the archive)
+            List<MediaAsset> assets = sp.getStageNodes().stream().flatMap(StageNode::assets).distinct()
+                    .collect(Collectors.toList());
+            assets.parallelStream().forEach(ThrowingConsumer.unchecked(a -> a.setRawData(session.read(a.getName()))));
             return sp;
         }
     }
 
+    @Override
+    public PackSession open(Path zipPath) throws IOException {
+        return new ArchivePackSession(zipPath, this);
+    }
+
+    IoThrottle getThrottle() {
+        return throttle;
+    }
+
+    /** Pack structure from its story descriptor and thumbnail (may be null). */
+    StoryPack readStructure(byte[] storyJson, byte[] thumbnail) throws IOException {
+        return prepare(objectMapper.readValue(storyJson, StoryPack.class), thumbnail);
+    }
+
+    /** Metadata of a story descriptor, read up to its last metadata field. */
+    StoryPackMetadata parseMetadata(InputStream storyJson) throws IOException {
+        return StoryMetadataParser.parse(objectMapper.getFactory(), storyJson);
+    }
+
+    /** Set the thumbnail (may be null) and fix the structure of a parsed pack. */
+    private static StoryPack prepare(StoryPack sp, byte[] thumbnail) {
+        if (thumbnail != null) {
+            sp.getEnriched().setThumbnail(thumbnail);
+        }
+
+        // Make sure the first node is actually 'square one'
+        List<StageNode> stageNodes = sp.getStageNodes();
+        int i = indexOfFirst(stageNodes);
+        if (i > 0) { // move tagged node to 1st position
+            stageNodes.add(0, stageNodes.remove(i));
+        } else if (i < 0) { // tag 1st node
+            stageNodes.get(0).setSquareOne(Boolean.TRUE);
+        }
+        // set storypack uuid (if missing) from 1st node
+        if (sp.getUuid() == null) {
+            sp.setUuid(stageNodes.get(0).getUuid());
+        }
+        // Assets shared by name : each one is read, converted and written once
+        Map<String, MediaAsset> assets = new HashMap<>();
+        for (StageNode sn : stageNodes) {
+            sn.setImage(intern(assets, sn.getImage()));
+            sn.setAudio(intern(assets, sn.getAudio()));
+        }
+        // Assets type from their name
+        assets.values().forEach(MediaAsset::guessType);
+        return sp;
+    }
+
+    /** Same instance for all the references to an asset. */
+    private static MediaAsset intern(Map<String, MediaAsset> assets, MediaAsset asset) {
+        if (asset == null) {
+            return null;
+        }
+        MediaAsset shared = assets.putIfAbsent(asset.getName(), asset);
+        return shared != null ? shared : asset;
+    }
+
     /** Find index of node tagged 'square one'. */
     private static int indexOfFirst(List<StageNode> stageNodes) {
         for (int i = 0; i < stageNodes.size(); i++) {
@@ -12,29 +12,71 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import studio.core.v1.model.StageNode;
 import studio.core.v1.model.StoryPack;
 import studio.core.v1.model.asset.MediaAsset;
+import studio.core.v1.service.PackOutput;
 import studio.core.v1.service.StoryPackWriter;
-import studio.core.v1.utils.stream.ThrowingConsumer;
+import studio.core.v1.utils.io.IoThrottle;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.Writer;
-import java.net.URI;
-import java.nio.file.*;
+import java.nio.file.Path;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
 public class ArchiveStoryPackWriter implements StoryPackWriter {
 
-    private static final Map<String, String> ZIPFS_OPTIONS = Map.of("create", "true");
+    /** Jackson writer, built on first write : check-only runs never need it. */
+    private static final class Json {
+        private static final ObjectWriter WRITER = new ObjectMapper().setSerializationInclusion(Include.NON_NULL)
+                .writerWithDefaultPrettyPrinter();
+    }
+
+    private final IoThrottle throttle;
 
-    /** Jackson writer. */
-    private ObjectWriter objectWriter = new ObjectMapper().setSerializationInclusion(Include.NON_NULL)
-            .writerWithDefaultPrettyPrinter();
+    /** Writer without I/O limits. */
+    public ArchiveStoryPackWriter() {
+        this(new IoThrottle(0, 0));
+    }
+
+    /**
+     * @param throttle I/O limits of the packs written to files
+     */
+    public ArchiveStoryPackWriter(IoThrottle throttle) {
+        this.throttle = throttle;
+    }
 
     @Override
     public void write(StoryPack pack, Path zipPath, boolean enriched) throws IOException {
+        // Add media
+        Set<MediaAsset> medias = new HashSet<>();
+        for (StageNode sn : pack.getStageNodes()) {
+            // keep assets
+            medias.add(sn.getImage());
+            medias.add(sn.getAudio());
+        }
+        try (PackOutput output = create(zipPath)) {
+            // Add assets in separate directory
+            for (MediaAsset m : medias) {
+                if (Objects.nonNull(m)) {
+                    output.writeAsset(m.getName(), m.getRawData());
+                }
+            }
+            output.finish(pack, enriched);
+        }
+    }
+
+    @Override
+    public PackOutput create(Path zipPath) {
+        return new ArchivePackOutput(zipPath, Json.WRITER, throttle);
+    }
+
+    /** Create a pack written to a stream, left open once finished. */
+    public PackOutput create(OutputStream outputStream) {
+        return new ArchivePackOutput(outputStream, Json.WRITER);
+    }
+
+    /** Fix pack before writing its story descriptor. */
+    static void prepare(StoryPack pack) {
         // Fix missing title
         if (pack.getEnriched() != null && pack.getEnriched().getTitle() == null) {
             pack.getEnriched().setTitle("MISSING_PACK_TITLE");
@@ -44,35 +86,11 @@ public class ArchiveStoryPackWriter implements StoryPackWriter {
         if (!Boolean.TRUE.equals(snFirst.getSquareOne())) {
             snFirst.setSquareOne(Boolean.TRUE);
         }
-        // Add media
-        Set<MediaAsset> medias = new HashSet<>();
         for (StageNode sn : pack.getStageNodes()) {
             // Fix missing node name
             if (sn.getEnriched() != null && sn.getEnriched().getName() == null) {
                 sn.getEnriched().setName("MISSING_NAME");
             }
-            // keep assets
-            medias.add(sn.getImage());
-            medias.add(sn.getAudio());
-        }
-
-        // Zip archive contains a json file and separate assets
-        URI uri = URI.create("jar:" + zipPath.toUri());
-        try (FileSystem zipFs = FileSystems.newFileSystem(uri, ZIPFS_OPTIONS)) {
-            // Add story descriptor file: story.json
-            try (Writer jsonWriter = Files.newBufferedWriter(zipFs.getPath(ArchiveStoryPackReader.STORY_JSON))) {
-                objectWriter.writeValue(jsonWriter, pack);
-            }
-            // Add thumbnail file: thumbnail.png
-            if (pack.getEnriched() != null && pack.getEnriched().getThumbnail() != null) {
-                try (OutputStream jsonWriter = Files.newOutputStream(zipFs.getPath(ArchiveStoryPackReader.THUMBNAIL_PNG), StandardOpenOption.CREATE)) {
-                    jsonWriter.write(pack.getEnriched().getThumbnail());
-                }
-            }
-            // Add assets in separate directory
-            Path assetPath = Files.createDirectories(zipFs.getPath("assets/"));
-            medias.parallelStream().filter(Objects::nonNull).forEach(
-                    ThrowingConsumer.unchecked(m -> Files.write(assetPath.resolve(m.getName()), m.getRawData())));
         }
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.service.archive;
+
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.service.AssetReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Zip archive read from a stream (e.g. a pipe), entry by entry.
+ * <p>
+ * Story descriptor may come after the assets, so assets are kept until the pack is processed : in memory up to a
+ * threshold per pack, then in a temporary spool file deleted on close.
+ */
+public class ArchiveStreamReader implements AssetReader {
+
+    /** Default assets bytes kept in memory, per pack. */
+    public static final long MEMORY_THRESHOLD = 16 * 1024 * 1024L;
+
+    private final byte[] storyJson;
+    private final byte[] thumbnail;
+    private final Map<String, byte[]> assets;
+    /** Spooled assets : offset and length in the spool file. */
+    private final Map<String, long[]> spooled;
+    private final FileChannel spool;
+
+    private ArchiveStreamReader(byte[] storyJson, byte[] thumbnail, Map<String, byte[]> assets,
+            Map<String, long[]> spooled, FileChannel spool) {
+        this.storyJson = storyJson;
+        this.thumbnail = thumbnail;
+        this.assets = assets;
+        this.spooled = spooled;
+        this.spool = spool;
+    }
+
+    /**
+     * Read a whole zip archive, keeping up to {@link #MEMORY_THRESHOLD} assets bytes in memory. The stream is not
+     * closed.
+     *
+     * @return reader of the pack
+     */
+    public static ArchiveStreamReader read(InputStream inputStream) throws IOException {
+        return read(inputStream, MEMORY_THRESHOLD);
+    }
+
+    /**
+     * Read a whole zip archive. The stream is not closed.
+     *
+     * @param memoryThreshold assets bytes kept in memory, the next assets are spooled to a temporary file
+     * @return reader of the pack
+     */
+    public static ArchiveStreamReader read(InputStream inputStream, long memoryThreshold) throws IOException {
+        Map<String, byte[]> assets = new HashMap<>();
+        Map<String, long[]> spooled = new HashMap<>();
+        byte[] storyJson = null;
+        byte[] thumbnail = null;
+        long inMemory = 0;
+        FileChannel spool = null;
+        try {
+            ZipInputStream zis = new ZipInputStream(inputStream);
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (ArchiveStoryPackReader.STORY_JSON.equals(name)) {
+                    storyJson = zis.readAllBytes();
+                } else if (ArchiveStoryPackReader.THUMBNAIL_PNG.equals(name)) {
+                    thumbnail = zis.readAllBytes();
+                } else if (name.startsWith(ArchiveStoryPackReader.ASSETS_DIR)) {
+                    String assetName = name.substring(ArchiveStoryPackReader.ASSETS_DIR.length());
+                    // One byte more than what fits : the asset is spooled
+                    long remaining = Math.max(0, memoryThreshold - inMemory);
+                    byte[] head = zis.readNBytes((int) Math.min(remaining + 1, Integer.MAX_VALUE - 8L));
+                    if (head.length <= remaining) {
+                        assets.put(assetName, head);
+                        inMemory += head.length;
+                        continue;
+                    }
+                    if (spool == null) {
+                        spool = FileChannel.open(Files.createTempFile("spc-stream", ".spool"), StandardOpenOption.READ,
+                                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                    }
+                    long offset = spool.position();
+                    writeFully(spool, ByteBuffer.wrap(head));
+                    zis.transferTo(Channels.newOutputStream(spool));
+                    spooled.put(assetName, new long[]{offset, spool.position() - offset});
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (spool != null) {
+                spool.close();
+            }
+            throw e;
+        }
+        return new ArchiveStreamReader(storyJson, thumbnail, Collections.synchronizedMap(assets), spooled, spool);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** New copy of the pack structure, or null if no story.json found. */
+    public StoryPack readStructure() throws IOException {
+        return storyJson == null ? null : new ArchiveStoryPackReader().readStructure(storyJson, thumbnail);
+    }
+
+    @Override
+    public long size(String assetName) throws IOException {
+        long[] location = spooled.get(assetName);
+        return location != null ? location[1] : asset(assetName).length;
+    }
+
+    @Override
+    public byte[] read(String assetName) throws IOException {
+        long[] location = spooled.get(assetName);
+        if (location == null) {
+            return asset(assetName);
+        }
+        // Positional reads : safe from many threads
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(location[1]));
+        while (buffer.hasRemaining()) {
+            if (spool.read(buffer, location[0] + buffer.position()) < 0) {
+                throw new EOFException("Truncated spool of " + assetName);
+            }
+        }
+        return buffer.array();
+    }
+
+    private byte[] asset(String assetName) throws NoSuchFileException {
+        byte[] data = assets.get(assetName);
+        if (data == null) {
+            throw new NoSuchFileException(ArchiveStoryPackReader.ASSETS_DIR + assetName);
+        }
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        assets.clear();
+        if (spool != null) {
+            spool.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.service.archive;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import studio.core.v1.model.metadata.StoryPackMetadata;
+import studio.core.v1.service.PackFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Read the metadata of a story descriptor token by token : top-level fields and the uuid of the first stage node.
+ * Nodes are skipped without being bound, and parsing stops once all the metadata fields are met.
+ * <p>
+ * Without pack uuid, the whole descriptor is scanned. The optional sector size is not searched after the nodes.
+ */
+final class StoryMetadataParser {
+
+    private static final String STAGE_NODES = "stageNodes";
+    private static final String UUID_FIELD = "uuid";
+    /** Metadata fields of a story descriptor, searched until all met. */
+    private static final Set<String> FIELDS = Set.of("format", UUID_FIELD, "version", "title", "description",
+            "nightModeAvailable", STAGE_NODES);
+
+    private StoryMetadataParser() {
+        throw new IllegalArgumentException("Utility class");
+    }
+
+    static StoryPackMetadata parse(JsonFactory factory, InputStream storyJson) throws IOException {
+        StoryPackMetadata spMeta = new StoryPackMetadata(PackFormat.ARCHIVE);
+        try (JsonParser p = factory.createParser(storyJson)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(p, "Story descriptor is not an object");
+            }
+            Set<String> missing = new HashSet<>(FIELDS);
+            while (!missing.isEmpty() && p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                missing.remove(field);
+                p.nextToken();
+                switch (field) {
+                    case "format":
+                        spMeta.setFormat(p.getValueAsString());
+                        break;
+                    case UUID_FIELD:
+                        spMeta.setUuid(uuid(p));
+                        break;
+                    case "version":
+                        spMeta.setVersion((short) p.getValueAsInt());
+                        break;
+                    case "title":
+                        spMeta.setTitle(p.getValueAsString());
+                        break;
+                    case "description":
+                        spMeta.setDescription(p.getValueAsString());
+                        break;
+                    case "sectorSize":
+                        spMeta.setSectorSize(p.currentToken() == JsonToken.VALUE_NULL ? null : p.getValueAsInt());
+                        break;
+                    case "nightModeAvailable":
+                        spMeta.setNightModeAvailable(p.getValueAsBoolean());
+                        break;
+                    case STAGE_NODES:
+                        // Other nodes are only skipped when more metadata may follow
+                        spMeta.setUuidFirst(firstNodeUuid(p, missing.isEmpty()));
+                        break;
+                    default:
+                        break;
+                }
+                p.skipChildren();
+            }
+        }
+        return spMeta;
+    }
+
+    /**
+     * Uuid of the first node of the stage nodes array.
+     *
+     * @param stop return once found, leaving the parser inside the array
+     */
+    private static UUID firstNodeUuid(JsonParser p, boolean stop) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            return null;
+        }
+        UUID uuid = null;
+        JsonToken token = p.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+                if (UUID_FIELD.equals(field)) {
+                    uuid = uuid(p);
+                    if (stop) {
+                        return uuid;
+                    }
+                }
+                p.skipChildren();
+            }
+        } else {
+            p.skipChildren();
+        }
+        for (token = p.nextToken(); token != JsonToken.END_ARRAY; token = p.nextToken()) {
+            if (token == null) {
+                throw new JsonParseException(p, "Unexpected end of story descriptor");
+            }
+            p.skipChildren();
+        }
+        return uuid;
+    }
+
+    private static UUID uuid(JsonParser p) throws IOException {
+        String s = p.getValueAsString();
+        if (s == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(s);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(p, "Invalid uuid : " + s, e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.utils.io;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bandwidth and IOPS limit, shared by the pack readers and writers it is given to, from all their threads.
+ * <p>
+ * Each limit is a token bucket refilled continuously and holding one second of tokens. A request bigger than the
+ * available tokens is granted on credit, and its thread sleeps until the bucket is back to zero : concurrent threads
+ * queue up behind it. Unlimited by default.
+ */
+public class IoThrottle {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long bytesPerSecond;
+    private final long opsPerSecond;
+
+    private double byteTokens;
+    private double opTokens;
+    private long refilled = System.nanoTime();
+
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder ops = new LongAdder();
+    private final LongAdder waitedNanos = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    /** End of the last wait, to tell if I/O is currently throttled. */
+    private volatile long throttledUntil = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond bandwidth limit, 0 for none
+     * @param opsPerSecond   I/O operations limit, 0 for none
+     */
+    public IoThrottle(long bytesPerSecond, long opsPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        this.opsPerSecond = Math.max(0, opsPerSecond);
+        this.byteTokens = this.bytesPerSecond;
+        this.opTokens = this.opsPerSecond;
+    }
+
+    public boolean isLimited() {
+        return bytesPerSecond > 0 || opsPerSecond > 0;
+    }
+
+    /** Account one I/O operation of the given size, waiting for the limits. */
+    public void acquire(long size) throws InterruptedIOException {
+        bytes.add(size);
+        ops.increment();
+        if (!isLimited()) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            double elapsed = (double) (now - refilled) / SECOND;
+            refilled = now;
+            byteTokens = Math.min(bytesPerSecond, byteTokens + elapsed * bytesPerSecond) - size;
+            opTokens = Math.min(opsPerSecond, opTokens + elapsed * opsPerSecond) - 1;
+            waitNanos = Math.max(deficit(byteTokens, bytesPerSecond), deficit(opTokens, opsPerSecond));
+            if (waitNanos > 0) {
+                throttledUntil = Math.max(throttledUntil, now + waitNanos);
+            }
+        }
+        if (waitNanos > 0) {
+            waits.increment();
+            waitedNanos.add(waitNanos);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled");
+            }
+        }
+    }
+
+    /** Time to refill a negative bucket. */
+    private static long deficit(double tokens, long rate) {
+        return rate > 0 && tokens < 0 ? (long) (-tokens * SECOND / rate) : 0;
+    }
+
+    /** A thread is waiting for the limits now. */
+    public boolean isThrottling() {
+        return System.nanoTime() - throttledUntil < 0;
+    }
+
+    /** Bytes that can be read or written now without waiting (negative when in debt), or -1 if unlimited. */
+    public synchronized long getAvailableBytes() {
+        return bytesPerSecond > 0 ? (long) available(byteTokens, bytesPerSecond) : -1;
+    }
+
+    /** I/O operations that can be done now without waiting (negative when in debt), or -1 if unlimited. */
+    public synchronized long getAvailableOps() {
+        return opsPerSecond > 0 ? (long) available(opTokens, opsPerSecond) : -1;
+    }
+
+    /** Tokens refilled until now, without consuming them. */
+    private double available(double tokens, long rate) {
+        return Math.min(rate, tokens + (double) (System.nanoTime() - refilled) / SECOND * rate);
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public long getOpsPerSecond() {
+        return opsPerSecond;
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getOps() {
+        return ops.sum();
+    }
+
+    /** Operations that waited for the limits. */
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    /** Total time threads waited for the limits. */
+    public long getWaitedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitedNanos.sum());
+    }
+
+    /** Metrics, for logs. */
+    @Override
+    public String toString() {
+        return String.format("%s in %d operations, %d throttled for %d ms in total, %s (limits : %s/s, %s IOPS)",
+                FileUtils.readableByteSize(getBytes()), getOps(), getWaits(), getWaitedMillis(),
+                isThrottling() ? "throttling now" : "not throttling",
+                bytesPerSecond > 0 ? FileUtils.readableByteSize(bytesPerSecond) : "none",
+                opsPerSecond > 0 ? String.valueOf(opsPerSecond) : "none");
+    }
+
+    /** Each read is one operation : buffer it above. */
+    public InputStream wrap(InputStream is) {
+        return new FilterInputStream(is) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    acquire(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /** Each write is one operation : buffer it above. */
+    public OutputStream wrap(OutputStream os) {
+        return new FilterOutputStream(os) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                acquire(len);
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+        };
+    }
+}
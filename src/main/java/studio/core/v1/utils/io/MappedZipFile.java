@@ -0,0 +1,291 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.utils.io;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Zip archive mapped in memory, with its central directory parsed once on open.
+ * <p>
+ * Entries are read from independent positions of the mapping, without lock : stored entries are slices of the
+ * mapping, deflated entries are inflated by the calling thread. Archives up to 2 GB, zip64 directories supported.
+ */
+public class MappedZipFile implements Closeable {
+
+    /** Biggest mappable archive. */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_END_HEADER = 0x06064b50;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final long MAGIC32 = 0xFFFFFFFFL;
+    private static final int MAGIC16 = 0xFFFF;
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+        private final String name;
+        /** {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}. */
+        private final int method;
+        private final long size;
+        private final long compressedSize;
+        private final long crc;
+        private final long localHeaderOffset;
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    private volatile ByteBuffer mapping;
+
+    public MappedZipFile(Path zipPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_SIZE) {
+                throw new ZipException("Zip file too big to be mapped : " + zipPath);
+            }
+            // Mapping outlives the channel
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            this.entries = Collections.unmodifiableMap(readCentralDirectory(map));
+            this.mapping = map;
+        }
+    }
+
+    /** Entry by name, or null. */
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /** All entries, in central directory order. */
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    /** Stored bytes of an entry (compressed if deflated) : a read-only slice of the mapping, without copy. */
+    public ByteBuffer slice(Entry entry) throws IOException {
+        ByteBuffer map = mapping();
+        int offset = (int) entry.getLocalHeaderOffset();
+        if (offset + 30 > map.limit() || map.getInt(offset) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header : " + entry.getName());
+        }
+        long start = (long) offset + 30 + (map.getShort(offset + 26) & MAGIC16) + (map.getShort(offset + 28) & MAGIC16);
+        long end = start + entry.getCompressedSize();
+        if (end > map.limit()) {
+            throw new ZipException("Truncated entry : " + entry.getName());
+        }
+        ByteBuffer slice = map.duplicate();
+        slice.position((int) start).limit((int) end);
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    /** Uncompressed content of an entry. */
+    public byte[] read(Entry entry) throws IOException {
+        ByteBuffer stored = slice(entry);
+        if (entry.getMethod() == ZipEntry.STORED) {
+            byte[] data = new byte[stored.remaining()];
+            stored.get(data);
+            return data;
+        }
+        if (entry.getSize() > Integer.MAX_VALUE - 8) {
+            throw new ZipException("Entry too big : " + entry.getName());
+        }
+        byte[] data = new byte[(int) entry.getSize()];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(stored);
+            int n = 0;
+            while (n < data.length) {
+                int inflated = inflater.inflate(data, n, data.length - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != data.length) {
+                throw new ZipException("Invalid entry size : " + entry.getName());
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflated data : " + entry.getName());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Content of an entry, inflated as it is read : reading can stop early. */
+    public InputStream getInputStream(Entry entry) throws IOException {
+        InputStream stored = new ByteBufferInputStream(slice(entry));
+        if (entry.getMethod() == ZipEntry.STORED) {
+            return stored;
+        }
+        Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(stored, inflater) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inflater.end();
+            }
+        };
+    }
+
+    /** The mapping is released by the garbage collector : the file may stay locked until then on Windows. */
+    @Override
+    public void close() {
+        mapping = null;
+    }
+
+    private ByteBuffer mapping() throws IOException {
+        ByteBuffer map = mapping;
+        if (map == null) {
+            throw new IOException("Zip file closed");
+        }
+        return map;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return len == 0 ? 0 : -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private static Map<String, Entry> readCentralDirectory(ByteBuffer map) throws ZipException {
+        int end = findEnd(map);
+        long count = map.getShort(end + 10) & MAGIC16;
+        long cdSize = map.getInt(end + 12) & MAGIC32;
+        long cdOffset = map.getInt(end + 16) & MAGIC32;
+        if (count == MAGIC16 || cdSize == MAGIC32 || cdOffset == MAGIC32) {
+            int locator = end - 20;
+            if (locator >= 0 && map.getInt(locator) == ZIP64_LOCATOR) {
+                long zip64End = map.getLong(locator + 8);
+                if (zip64End < 0 || zip64End + 56 > map.limit() || map.getInt((int) zip64End) != ZIP64_END_HEADER) {
+                    throw new ZipException("Invalid zip64 end of central directory");
+                }
+                count = map.getLong((int) zip64End + 32);
+                cdSize = map.getLong((int) zip64End + 40);
+                cdOffset = map.getLong((int) zip64End + 48);
+            }
+        }
+        if (cdOffset < 0 || cdOffset + cdSize > map.limit()) {
+            throw new ZipException("Invalid central directory");
+        }
+        Map<String, Entry> entries = new LinkedHashMap<>((int) Math.min(count * 4 / 3 + 1, 1 << 16));
+        int pos = (int) cdOffset;
+        for (long i = 0; i < count; i++) {
+            if (pos + 46 > map.limit() || map.getInt(pos) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory entry");
+            }
+            int flags = map.getShort(pos + 8) & MAGIC16;
+            int method = map.getShort(pos + 10) & MAGIC16;
+            long crc = map.getInt(pos + 16) & MAGIC32;
+            long compressedSize = map.getInt(pos + 20) & MAGIC32;
+            long size = map.getInt(pos + 24) & MAGIC32;
+            int nameLength = map.getShort(pos + 28) & MAGIC16;
+            int extraLength = map.getShort(pos + 30) & MAGIC16;
+            int commentLength = map.getShort(pos + 32) & MAGIC16;
+            long offset = map.getInt(pos + 42) & MAGIC32;
+            String name = string(map, pos + 46, nameLength);
+            // zip64 values, in this order, only for the saturated fields
+            int extra = pos + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = map.getShort(extra) & MAGIC16;
+                int length = map.getShort(extra + 2) & MAGIC16;
+                if (id == ZIP64_EXTRA) {
+                    int field = extra + 4;
+                    if (size == MAGIC32) {
+                        size = map.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == MAGIC32) {
+                        compressedSize = map.getLong(field);
+                        field += 8;
+                    }
+                    if (offset == MAGIC32) {
+                        offset = map.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            if ((flags & 1) != 0) {
+                throw new ZipException("Encrypted entry : " + name);
+            }
+            if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED) {
+                throw new ZipException("Unsupported compression method " + method + " : " + name);
+            }
+            if (offset < 0 || offset >= map.limit() || compressedSize < 0 || size < 0) {
+                throw new ZipException("Invalid central directory entry : " + name);
+            }
+            entries.put(name, new Entry(name, method, size, compressedSize, crc, offset));
+            pos = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    /** End of central directory record, searched backward over the archive comment. */
+    private static int findEnd(ByteBuffer map) throws ZipException {
+        int last = map.limit() - END_SIZE;
+        for (int pos = last; pos >= 0 && pos >= last - MAGIC16; pos--) {
+            if (map.getInt(pos) == END_HEADER && pos + END_SIZE + (map.getShort(pos + 20) & MAGIC16) <= map.limit()) {
+                return pos;
+            }
+        }
+        throw new ZipException("Not a zip file : no end of central directory");
+    }
+
+    private static String string(ByteBuffer map, int offset, int length) {
+        byte[] bytes = new byte[length];
+        map.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
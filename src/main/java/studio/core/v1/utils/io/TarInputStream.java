@@ -0,0 +1,189 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.utils.io;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read a tar archive entry by entry, like {@link java.util.zip.ZipInputStream} : entry data is read from this stream
+ * until its end. Supports ustar, GNU long names and pax paths.
+ */
+public class TarInputStream extends FilterInputStream {
+
+    static final int BLOCK = 512;
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class TarEntry {
+        private final String name;
+        private final long size;
+        private final boolean file;
+    }
+
+    private final byte[] header = new byte[BLOCK];
+    /** Unread bytes of the current entry. */
+    private long remaining;
+    /** Padding after the current entry. */
+    private long padding;
+
+    public TarInputStream(InputStream in) {
+        super(in);
+    }
+
+    /** Skip to the next entry. Return null at the end of the archive. */
+    public TarEntry getNextEntry() throws IOException {
+        String longName = null;
+        while (true) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+            if (!readBlock() || isZeroBlock()) {
+                return null;
+            }
+            long size = parseNumber(124, 12);
+            char type = (char) header[156];
+            String name = longName != null ? longName : parseName();
+            longName = null;
+            remaining = size;
+            padding = (BLOCK - size % BLOCK) % BLOCK;
+            if (type == 'L') {
+                // GNU long name of the next entry
+                longName = trimNul(new String(readAllBytes(), StandardCharsets.UTF_8));
+            } else if (type == 'x') {
+                // pax extended header : only its path is used
+                longName = paxPath(new String(readAllBytes(), StandardCharsets.UTF_8));
+            } else if (type != 'g') {
+                return new TarEntry(name, size, type == '0' || type == '\0' || type == '7');
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int b = super.read();
+        if (b >= 0) {
+            remaining--;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = super.read(b, off, (int) Math.min(len, remaining));
+        if (n > 0) {
+            remaining -= n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(super.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private boolean readBlock() throws IOException {
+        int n = in.readNBytes(header, 0, BLOCK);
+        if (n == 0) {
+            return false;
+        }
+        if (n < BLOCK) {
+            throw new IOException("Truncated tar header");
+        }
+        return true;
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Truncated tar entry");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String parseName() {
+        String name = trimNul(new String(header, 0, 100, StandardCharsets.UTF_8));
+        // ustar : name prefix
+        if ("ustar".equals(new String(header, 257, 5, StandardCharsets.US_ASCII)) && header[345] != 0) {
+            name = trimNul(new String(header, 345, 155, StandardCharsets.UTF_8)) + "/" + name;
+        }
+        return name;
+    }
+
+    /** Octal number, or base-256 (GNU) for big sizes. */
+    private long parseNumber(int offset, int length) {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /** Records are "length key=value\n". */
+    private static String paxPath(String records) {
+        for (String record : records.split("\n")) {
+            int sp = record.indexOf(' ');
+            if (sp > 0 && record.startsWith("path=", sp + 1)) {
+                return record.substring(sp + 1 + "path=".length());
+            }
+        }
+        return null;
+    }
+
+    private static String trimNul(String s) {
+        int nul = s.indexOf('\0');
+        return nul >= 0 ? s.substring(0, nul) : s;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.utils.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Write a ustar archive of regular files. Long names are written as GNU long name entries.
+ */
+public class TarOutputStream extends FilterOutputStream {
+
+    private static final int BLOCK = TarInputStream.BLOCK;
+    private static final int NAME_LENGTH = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private boolean finished;
+
+    public TarOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /** Write a whole file entry. */
+    public void writeEntry(String name, byte[] data) throws IOException {
+        writeEntry(name, data.length, new ByteArrayInputStream(data));
+    }
+
+    /** Write a file entry of the given size, streamed from the input. The input is not closed. */
+    public void writeEntry(String name, long size, InputStream data) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > NAME_LENGTH) {
+            byte[] longName = new byte[nameBytes.length + 1];
+            System.arraycopy(nameBytes, 0, longName, 0, nameBytes.length);
+            writeHeader("././@LongLink".getBytes(StandardCharsets.US_ASCII), longName.length, 'L');
+            writeData(longName);
+        }
+        writeHeader(nameBytes, size, '0');
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            int read = data.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Tar entry " + name + " shorter than " + size + " bytes");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        pad(size);
+    }
+
+    private void writeHeader(byte[] name, long size, char type) throws IOException {
+        byte[] header = new byte[BLOCK];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, NAME_LENGTH));
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, System.currentTimeMillis() / 1000);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        // Checksum is computed with its own field as spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+        out.write(header);
+    }
+
+    private void writeData(byte[] data) throws IOException {
+        out.write(data);
+        pad(data.length);
+    }
+
+    private void pad(long size) throws IOException {
+        out.write(new byte[(int) ((BLOCK - size % BLOCK) % BLOCK)]);
+    }
+
+    /** Zero-padded octal, NUL terminated. */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String s = Long.toOctalString(value);
+        if (s.length() > length - 1) {
+            throw new IllegalArgumentException("Value too big for tar header : " + value);
+        }
+        byte[] digits = ("0".repeat(length - 1 - s.length()) + s).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(digits, 0, header, offset, digits.length);
+        header[offset + length - 1] = 0;
+    }
+
+    /** Write the end of archive, without closing the stream. */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        out.write(new byte[2 * BLOCK]);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        super.close();
+    }
+}
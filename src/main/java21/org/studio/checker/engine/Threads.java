@@ -0,0 +1,98 @@
+package org.studio.checker.engine;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads of blocking work : pack reads and writes, waits for FFmpeg processes.
+ * <p>
+ * JDK 21+ version, from the multi-release jar : blocking work runs on virtual threads, and CPU-bound work stays on
+ * the assets pool of platform threads.
+ */
+public final class Threads {
+
+    private Threads() {
+        throw new IllegalArgumentException("Utility class");
+    }
+
+    /** Blocking work runs on virtual threads. */
+    public static boolean isVirtual() {
+        return true;
+    }
+
+    /** Current thread is virtual : CPU-bound work should be handed over to platform threads. */
+    public static boolean isCurrentVirtual() {
+        return Thread.currentThread().isVirtual();
+    }
+
+    /** Named virtual threads, for blocking work. */
+    public static ThreadFactory blocking(String name) {
+        return Thread.ofVirtual().name(name + "-", 1).factory();
+    }
+
+    /**
+     * Executor of blocking tasks, running at most the given number at once. Each task gets its own virtual thread,
+     * parked on a semaphore until it may run : queued tasks hold no platform thread.
+     */
+    public static ExecutorService newBlockingExecutor(String name, int maxThreads) {
+        return new BoundedExecutor(Executors.newThreadPerTaskExecutor(blocking(name)), new Semaphore(maxThreads));
+    }
+
+    private static final class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        // Bounds the FFmpeg processes running at once
+        private final Semaphore running;
+
+        private BoundedExecutor(ExecutorService delegate, Semaphore running) {
+            this.delegate = delegate;
+            this.running = running;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                // Keeps the interrupt status : the task sees it and fails fast
+                running.acquireUninterruptibly();
+                // Permit given back at once if the task is abandoned
+                TaskSlot slot = new TaskSlot(running::release);
+                try {
+                    slot.run(command);
+                } finally {
+                    if (slot.finish()) {
+                        running.release();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
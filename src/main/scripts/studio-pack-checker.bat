@@ -9,5 +9,17 @@ set CWD=%~dp0
 :: Set debug mode
 ::DEBUG=-Dlogback.configurationFile=logback-dev.xml
 
+:: Class data sharing archive of the startup classes, for a faster startup (JDK 13+).
+:: Built by a training run on first launch, delete it after a JDK upgrade.
+:: Disabled for good (.off) only if the JVM rejects dynamic archives : a failed training run is retried on next launch.
+set JSA=%CWD%studio-pack-checker.jsa
+if not exist "%JSA%" if not exist "%JSA%.off" (
+  java -XX:ArchiveClassesAtExit="%JSA%.tmp" -Xlog:cds=off -version >nul 2>&1 || type nul > "%JSA%.off"
+  if not exist "%JSA%.off" java -XX:ArchiveClassesAtExit="%JSA%.tmp" -Xlog:cds=off -jar "%CWD%/studio-pack-checker.jar" --warmup >nul 2>&1 && move /y "%JSA%.tmp" "%JSA%" >nul
+  if exist "%JSA%.tmp" del "%JSA%.tmp"
+)
+set CDS=
+if exist "%JSA%" set CDS=-XX:SharedArchiveFile="%JSA%" -Xshare:auto
+
 :: batch args as java system properties
-java %DEBUG% -jar "%CWD%/studio-pack-checker.jar" %*
+java %CDS% %DEBUG% -jar "%CWD%/studio-pack-checker.jar" %*
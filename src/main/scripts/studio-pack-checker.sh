@@ -9,5 +9,22 @@ CWD="`dirname \"$0\"`"
 # Set debug mode
 #DEBUG=-Dlogback.configurationFile=logback-dev.xml
 
+# Class data sharing archive of the startup classes, for a faster startup (JDK 13+).
+# Built by a training run on first launch, delete it after a JDK upgrade.
+# Disabled for good (.off) only if the JVM rejects dynamic archives : a failed training run is retried on next launch.
+JSA="$CWD/studio-pack-checker.jsa"
+if [ ! -f "$JSA" ] && [ ! -f "$JSA.off" ]; then
+  if ! java -XX:ArchiveClassesAtExit="$JSA.$$" -Xlog:cds=off -version >/dev/null 2>&1; then
+    # JDK without dynamic archive
+    touch "$JSA.off"
+  elif java -XX:ArchiveClassesAtExit="$JSA.$$" -Xlog:cds=off -jar "$CWD/studio-pack-checker.jar" --warmup >/dev/null 2>&1; then
+    mv -f "$JSA.$$" "$JSA"
+  fi
+  rm -f "$JSA.$$"
+fi
+if [ -f "$JSA" ]; then
+  CDS="-XX:SharedArchiveFile=$JSA -Xshare:auto"
+fi
+
 # batch args as java system properties
-exec java $DEBUG -jar $CWD/studio-pack-checker.jar $@
+exec java $CDS $DEBUG -jar $CWD/studio-pack-checker.jar $@
@@ -0,0 +1,18 @@
+package org.studio.checker;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FFmpegCreatorTest {
+
+    @Test
+    void ffprobeNextToFFmpeg() {
+        assertEquals(Paths.get("/opt/ffmpeg/bin/ffprobe").toString(), FFmpegCreator.ffprobePath("/opt/ffmpeg/bin/ffmpeg"));
+        assertEquals(Paths.get("tools/ffprobe.exe").toString(), FFmpegCreator.ffprobePath("tools/ffmpeg.exe"));
+        // Found from PATH
+        assertEquals(FFmpegCreator.DEFAULT_FFPROBE_PATH, FFmpegCreator.ffprobePath("ffmpeg"));
+    }
+}
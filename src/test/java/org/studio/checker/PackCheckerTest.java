@@ -0,0 +1,82 @@
+package org.studio.checker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.studio.checker.processor.Warmup;
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.service.archive.ArchiveStoryPackReader;
+import studio.core.v1.utils.io.IoThrottle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.ASSETS_DIR;
+import static studio.core.v1.service.archive.ArchiveStoryPackReader.STORY_JSON;
+
+class PackCheckerTest {
+
+    private static final IoThrottle NO_LIMIT = new IoThrottle(0, 0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void validOutput() throws IOException {
+        assertTrue(PackChecker.isValidOutput(Warmup.writePack(dir.resolve("pack.zip")), NO_LIMIT));
+    }
+
+    @Test
+    void outputOfWrittenPack() throws IOException {
+        Path pack = Warmup.writePack(dir.resolve("pack.zip"));
+        StoryPack written = new ArchiveStoryPackReader().read(pack);
+        assertTrue(PackChecker.isValidOutput(new ArchiveStoryPackReader(), pack, written));
+        written.setUuid(UUID.randomUUID());
+        assertFalse(PackChecker.isValidOutput(new ArchiveStoryPackReader(), pack, written));
+    }
+
+    @Test
+    void streamCheckedWithoutOutput() throws IOException, InterruptedException {
+        Path pack = Warmup.writePack(dir.resolve("pack.zip"));
+        CheckResult result;
+        try (PackChecker checker = PackChecker.builder().build();
+             InputStream is = Files.newInputStream(pack)) {
+            result = checker.checkStream("pack.zip", is, null, CheckOptions.builder().build(), false);
+        }
+        assertEquals(CheckResult.CheckResultEnum.OK, result.getResult());
+    }
+
+    @Test
+    void outputWithMissingAsset() throws IOException {
+        Path pack = Warmup.writePack(dir.resolve("pack.zip"));
+        try (FileSystem zipFs = FileSystems.newFileSystem(URI.create("jar:" + pack.toUri()), Map.of())) {
+            Files.delete(zipFs.getPath(ASSETS_DIR + "warmup.wav"));
+        }
+        assertFalse(PackChecker.isValidOutput(pack, NO_LIMIT));
+    }
+
+    @Test
+    void outputWithBrokenDescriptor() throws IOException {
+        Path pack = dir.resolve("broken.zip");
+        try (OutputStream os = Files.newOutputStream(pack);
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            zos.putNextEntry(new ZipEntry(STORY_JSON));
+            zos.write("{\"format\": \"v1\", \"stageNodes\": [".getBytes(StandardCharsets.UTF_8));
+        }
+        assertFalse(PackChecker.isValidOutput(pack, NO_LIMIT));
+        assertFalse(PackChecker.isValidOutput(dir.resolve("none.zip"), NO_LIMIT));
+    }
+}
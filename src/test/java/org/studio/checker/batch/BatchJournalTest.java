@@ -0,0 +1,181 @@
+package org.studio.checker.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.studio.checker.batch.BatchJournal.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void newJournalIsNotResumed() throws IOException {
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            assertFalse(journal.isResumed());
+        }
+    }
+
+    @Test
+    void finishedPacksAreDone() throws IOException {
+        Path verified = pack("verified.zip");
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.STARTED, verified, converted(verified));
+            journal.append(State.VERIFIED, verified, converted(verified));
+        }
+        BatchJournal journal = recover(Set.of());
+        assertTrue(journal.isResumed());
+        assertTrue(journal.isDone(verified));
+        journal.close();
+    }
+
+    @Test
+    void failedPacksAreRetried() throws IOException {
+        Path failed = pack("failed.zip");
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.STARTED, failed, failed);
+            journal.append(State.FAILED, failed, failed);
+        }
+        BatchJournal retrying = recover(Set.of());
+        assertFalse(retrying.isDone(failed));
+        retrying.close();
+        BatchJournal skipping = BatchJournal.open(dir, "");
+        skipping.recover(Set.<Path>of()::contains, false);
+        assertTrue(skipping.isDone(failed));
+        skipping.close();
+    }
+
+    @Test
+    void partialOutputIsDiscarded() throws IOException {
+        Path input = pack("started.zip");
+        Path output = converted(input);
+        Path part = Files.createFile(output.resolveSibling(output.getFileName() + ".part"));
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.STARTED, input, output);
+        }
+        BatchJournal journal = recover(Set.of());
+        assertFalse(journal.isDone(input));
+        assertFalse(Files.exists(part));
+        journal.close();
+    }
+
+    @Test
+    void validMovedOutputIsCompleted() throws IOException {
+        Path input = pack("written.zip");
+        Path output = Files.createFile(converted(input));
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.CONVERTED, input, output);
+        }
+        // Moved before the crash, but not journaled yet
+        BatchJournal journal = recover(Set.of(output));
+        assertTrue(journal.isDone(input));
+        assertTrue(Files.exists(output));
+        journal.close();
+        // Completion is journaled
+        assertTrue(recover(Set.of()).isDone(input));
+    }
+
+    @Test
+    void invalidMovedOutputIsDeleted() throws IOException {
+        Path input = pack("broken.zip");
+        Path output = Files.createFile(converted(input));
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.WRITTEN, input, output);
+        }
+        BatchJournal journal = recover(Set.of());
+        assertFalse(journal.isDone(input));
+        assertFalse(Files.exists(output));
+        assertTrue(Files.exists(input));
+        journal.close();
+    }
+
+    @Test
+    void inPlaceOutputDependsOnJournal() throws IOException {
+        Path written = pack("written-in-place.zip");
+        Path converted = pack("converted-in-place.zip");
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.WRITTEN, written, written);
+            journal.append(State.CONVERTED, converted, converted);
+        }
+        BatchJournal journal = recover(Set.of(written, converted));
+        assertTrue(journal.isDone(written));
+        // Original is never deleted
+        assertFalse(journal.isDone(converted));
+        assertTrue(Files.exists(converted));
+        journal.close();
+    }
+
+    @Test
+    void truncatedLineIsIgnored() throws IOException {
+        Path input = pack("truncated.zip");
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.STARTED, input, input);
+        }
+        Files.write(journal(), ("VERIFIED\t" + System.currentTimeMillis() + "\t" + input.toAbsolutePath())
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        BatchJournal journal = recover(Set.of(input));
+        assertFalse(journal.isDone(input));
+        journal.close();
+    }
+
+    @Test
+    void completedJournalIsDeleted() throws IOException {
+        Path input = pack("complete.zip");
+        BatchJournal journal = BatchJournal.open(dir, "");
+        journal.append(State.VERIFIED, input, input);
+        journal.complete();
+        assertFalse(Files.exists(journal()));
+        try (BatchJournal next = BatchJournal.open(dir, "")) {
+            assertFalse(next.isResumed());
+        }
+    }
+
+    @Test
+    void compactKeepsPacksInFlight() throws IOException {
+        Path finished = pack("finished.zip");
+        Path running = pack("running.zip");
+        try (BatchJournal journal = BatchJournal.open(dir, "")) {
+            journal.append(State.STARTED, finished, finished);
+            journal.append(State.VERIFIED, finished, finished);
+            journal.append(State.STARTED, running, running);
+            journal.compact();
+            assertEquals(1, Files.readAllLines(journal()).size());
+            // Still appended after a rewrite
+            journal.append(State.CONVERTED, running, running);
+            assertEquals(2, Files.readAllLines(journal()).size());
+            journal.append(State.VERIFIED, running, running);
+            journal.compact();
+            assertEquals(0, Files.size(journal()));
+        }
+    }
+
+    /** Reopen and recover the journal, with the given valid outputs, retrying failed packs. */
+    private BatchJournal recover(Set<Path> validOutputs) throws IOException {
+        BatchJournal journal = BatchJournal.open(dir, "");
+        journal.recover(validOutputs::contains, true);
+        return journal;
+    }
+
+    private Path journal() {
+        return dir.resolve(BatchJournal.JOURNAL_FILE + ".log");
+    }
+
+    private Path pack(String name) throws IOException {
+        return Files.write(dir.resolve(name), new byte[]{1});
+    }
+
+    private static Path converted(Path input) {
+        return input.resolveSibling(input.getFileName() + "_converted_spc.zip");
+    }
+}
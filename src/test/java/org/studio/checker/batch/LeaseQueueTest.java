@@ -0,0 +1,124 @@
+package org.studio.checker.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaseQueueTest {
+
+    private static final Duration TTL = Duration.ofSeconds(30);
+    private static final int WORKERS = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void claimedOnce() throws IOException {
+        Path pack = dir.resolve("pack.zip");
+        try (LeaseQueue a = queue("a"); LeaseQueue b = queue("b")) {
+            assertTrue(a.claim(pack));
+            assertFalse(b.claim(pack));
+            a.done(pack, "OK");
+            assertTrue(b.isDone(pack));
+            assertFalse(b.claim(pack));
+        }
+    }
+
+    @Test
+    void expiredLeaseIsReclaimed() throws IOException {
+        Path pack = dir.resolve("pack.zip");
+        try (LeaseQueue a = queue("a"); LeaseQueue b = queue("b")) {
+            assertTrue(a.claim(pack));
+            expire(pack);
+            assertTrue(b.claim(pack));
+            assertEquals("b", owner(pack));
+        }
+    }
+
+    @Test
+    void stalledWorkerKeepsOffReclaimedLease() throws IOException {
+        Path pack = dir.resolve("pack.zip");
+        try (LeaseQueue a = queue("a"); LeaseQueue b = queue("b")) {
+            assertTrue(a.claim(pack));
+            expire(pack);
+            assertTrue(b.claim(pack));
+            expire(pack);
+            // Back from a pause : neither revives nor deletes the lease of b
+            a.renew();
+            assertTrue(System.currentTimeMillis() - Files.getLastModifiedTime(lease(pack)).toMillis() > TTL.toMillis());
+            a.release(pack);
+            assertEquals("b", owner(pack));
+        }
+    }
+
+    @Test
+    void concurrentReclaimsHaveOneWinner() throws Exception {
+        List<LeaseQueue> queues = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        try {
+            for (int i = 0; i < WORKERS; i++) {
+                queues.add(queue("worker-" + i));
+            }
+            for (int round = 0; round < 50; round++) {
+                Path pack = dir.resolve("pack-" + round + ".zip");
+                Files.write(lease(pack), "dead".getBytes(StandardCharsets.UTF_8));
+                expire(pack);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> claims = new ArrayList<>();
+                for (LeaseQueue queue : queues) {
+                    claims.add(executor.submit(() -> {
+                        start.await();
+                        return queue.claim(pack);
+                    }));
+                }
+                start.countDown();
+                List<String> winners = new ArrayList<>();
+                for (int i = 0; i < WORKERS; i++) {
+                    if (claims.get(i).get()) {
+                        winners.add(queues.get(i).getWorkerId());
+                    }
+                }
+                assertEquals(1, winners.size(), "Round " + round + " : " + winners);
+                assertEquals(winners.get(0), owner(pack));
+                try (var files = Files.list(dir)) {
+                    assertFalse(files.anyMatch(f -> f.toString().endsWith(".stale")), "Round " + round);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            queues.forEach(LeaseQueue::close);
+        }
+    }
+
+    private LeaseQueue queue(String workerId) throws IOException {
+        return new LeaseQueue(dir, dir, TTL, workerId);
+    }
+
+    private Path lease(Path pack) {
+        return dir.resolve(Shard.key(dir, pack) + ".lease");
+    }
+
+    private String owner(Path pack) throws IOException {
+        return Files.readString(lease(pack)).trim();
+    }
+
+    private void expire(Path pack) throws IOException {
+        Files.setLastModifiedTime(lease(pack), FileTime.fromMillis(System.currentTimeMillis() - 2 * TTL.toMillis()));
+    }
+}
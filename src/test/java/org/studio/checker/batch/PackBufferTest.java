@@ -0,0 +1,89 @@
+package org.studio.checker.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackBufferTest {
+
+    @Test
+    void smallPackInMemory() throws IOException {
+        byte[] data = bytes(1000);
+        PackBuffer pack = write(data, data.length, 4096);
+        assertFalse(pack.isSpooled());
+        assertContent(data, pack);
+        pack.discard();
+    }
+
+    @Test
+    void unknownSizeGrowsInMemory() throws IOException {
+        byte[] data = bytes(3000);
+        PackBuffer pack = write(data, -1, 4096);
+        assertFalse(pack.isSpooled());
+        assertContent(data, pack);
+        pack.discard();
+    }
+
+    @Test
+    void largePackSpooled() throws IOException {
+        byte[] data = bytes(10_000);
+        PackBuffer pack = write(data, -1, 4096);
+        assertTrue(pack.isSpooled());
+        assertContent(data, pack);
+        // Read again
+        assertContent(data, pack);
+        pack.discard();
+    }
+
+    @Test
+    void unwrittenPackIsEmpty() throws IOException {
+        PackBuffer pack = new PackBuffer(10_000, 4096);
+        pack.close();
+        assertFalse(pack.isSpooled());
+        assertContent(new byte[0], pack);
+        pack.discard();
+    }
+
+    @Test
+    void memorySize() {
+        assertEquals(1000, PackBuffer.memorySize(1000));
+        assertEquals(PackBuffer.MEMORY_THRESHOLD, PackBuffer.memorySize(-1));
+        assertEquals(PackBuffer.MEMORY_THRESHOLD, PackBuffer.memorySize(10L * PackBuffer.MEMORY_THRESHOLD));
+    }
+
+    private static PackBuffer write(byte[] data, long expectedSize, int threshold) throws IOException {
+        PackBuffer pack = new PackBuffer(expectedSize, threshold);
+        try (pack) {
+            // Uneven writes
+            pack.write(data[0]);
+            for (int off = 1; off < data.length; off += 700) {
+                pack.write(data, off, Math.min(700, data.length - off));
+            }
+        }
+        return pack;
+    }
+
+    private static void assertContent(byte[] data, PackBuffer pack) throws IOException {
+        assertEquals(data.length, pack.getSize());
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        assertEquals(crc.getValue(), pack.getCrc());
+        try (InputStream is = pack.openStream()) {
+            assertArrayEquals(data, is.readAllBytes());
+        }
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,99 @@
+package org.studio.checker.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.studio.checker.CheckResult.CheckResultEnum;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackManifestTest {
+
+    private static final String OPTIONS = "compress";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unchangedOkPackIsSkipped() throws IOException {
+        Path pack = pack("pack.zip", "content");
+        PackManifest manifest = PackManifest.load(dir, "");
+        assertFalse(manifest.isUnchangedAndOk(pack, OPTIONS));
+        manifest.record(pack, OPTIONS, CheckResultEnum.OK);
+        assertTrue(manifest.isUnchangedAndOk(pack, OPTIONS));
+        assertFalse(manifest.isUnchangedAndOk(pack, "repair"));
+    }
+
+    @Test
+    void failedPackIsNotSkipped() throws IOException {
+        Path pack = pack("pack.zip", "content");
+        PackManifest manifest = PackManifest.load(dir, "");
+        manifest.record(pack, OPTIONS, CheckResultEnum.KO);
+        assertFalse(manifest.isUnchangedAndOk(pack, OPTIONS));
+    }
+
+    @Test
+    void touchedPackIsSkipped() throws IOException {
+        Path pack = pack("pack.zip", "content");
+        PackManifest manifest = PackManifest.load(dir, "");
+        manifest.record(pack, OPTIONS, CheckResultEnum.OK);
+        Files.setLastModifiedTime(pack, FileTime.fromMillis(Files.getLastModifiedTime(pack).toMillis() + 60_000));
+        assertTrue(manifest.isUnchangedAndOk(pack, OPTIONS));
+    }
+
+    @Test
+    void modifiedPackIsChecked() throws IOException {
+        Path pack = pack("pack.zip", "content");
+        PackManifest manifest = PackManifest.load(dir, "");
+        manifest.record(pack, OPTIONS, CheckResultEnum.OK);
+        FileTime recorded = Files.getLastModifiedTime(pack);
+        // Other content, later time
+        pack("pack.zip", "CONTENT");
+        Files.setLastModifiedTime(pack, FileTime.fromMillis(recorded.toMillis() + 60_000));
+        assertFalse(manifest.isUnchangedAndOk(pack, OPTIONS));
+    }
+
+    @Test
+    void savedAndLoaded() throws IOException {
+        Path pack = pack("pack.zip", "content");
+        PackManifest manifest = PackManifest.load(dir, "-1of2");
+        manifest.record(pack, OPTIONS, CheckResultEnum.OK);
+        manifest.save();
+        assertTrue(Files.exists(dir.resolve(PackManifest.MANIFEST_FILE + "-1of2.json")));
+        assertTrue(PackManifest.load(dir, "-1of2").isUnchangedAndOk(pack, OPTIONS));
+        assertFalse(PackManifest.load(dir, "").isUnchangedAndOk(pack, OPTIONS));
+    }
+
+    @Test
+    void centralDirectoryHash() throws IOException {
+        String hash = PackManifest.centralDirectoryHash(pack("a.zip", "content"));
+        assertEquals(hash, PackManifest.centralDirectoryHash(pack("b.zip", "content")));
+        assertNotEquals(hash, PackManifest.centralDirectoryHash(pack("c.zip", "other")));
+        assertNull(PackManifest.centralDirectoryHash(Files.write(dir.resolve("broken.zip"), new byte[]{1, 2, 3})));
+    }
+
+    private Path pack(String name, String content) throws IOException {
+        Path pack = dir.resolve(name);
+        try (OutputStream os = Files.newOutputStream(pack);
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            ZipEntry entry = new ZipEntry("story.json");
+            // Same entry time : content alone changes the archive
+            entry.setTime(0);
+            zos.putNextEntry(entry);
+            zos.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return pack;
+    }
+}
@@ -0,0 +1,86 @@
+package org.studio.checker.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardTest {
+
+    private static final Path ROOT = Paths.get("/mnt/packs");
+
+    @Test
+    void parse() {
+        Shard shard = Shard.parse("2/4");
+        assertEquals(2, shard.getIndex());
+        assertEquals(4, shard.getCount());
+        assertEquals("2/4", shard.toString());
+        assertEquals("-2of4", shard.fileSuffix());
+        assertEquals(3, Shard.parse(" 3 / 3 ").getIndex());
+    }
+
+    @Test
+    void parseInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("2"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("1/2/3"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("0/2"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("3/2"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("1/0"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("a/b"));
+    }
+
+    @Test
+    void keyIsRelativeToRoot() {
+        Path pack = Paths.get("sub", "pack.zip");
+        assertEquals(Shard.key(Paths.get("/mnt/a"), Paths.get("/mnt/a").resolve(pack)),
+                Shard.key(Paths.get("/srv/b"), Paths.get("/srv/b").resolve(pack)));
+        assertNotEquals(Shard.key(Paths.get("/mnt/a"), Paths.get("/mnt/a/sub/pack.zip")),
+                Shard.key(Paths.get("/mnt/a"), Paths.get("/mnt/a/other/pack.zip")));
+    }
+
+    @Test
+    void partitionCoversEveryPackOnce() {
+        List<Path> packs = packs(0, 1000);
+        List<Path> all = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            List<Path> slice = new Shard(i, 4).select(ROOT, packs);
+            // Roughly even
+            assertTrue(slice.size() > 150 && slice.size() < 350, "Shard " + i + " : " + slice.size());
+            all.addAll(slice);
+        }
+        assertEquals(packs.size(), all.size());
+        assertEquals(packs.stream().sorted().collect(Collectors.toList()), all.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void membershipIsStablePerPack() {
+        Shard shard = new Shard(2, 4);
+        List<Path> before = shard.select(ROOT, packs(0, 500));
+        List<Path> more = packs(0, 800);
+        // Listed later, in another order
+        more.sort((a, b) -> b.compareTo(a));
+        List<Path> after = shard.select(ROOT, more);
+        assertEquals(before.stream().sorted().collect(Collectors.toList()),
+                after.stream().filter(before::contains).sorted().collect(Collectors.toList()));
+        assertTrue(after.containsAll(before));
+    }
+
+    @Test
+    void singleShardKeepsAll() {
+        List<Path> packs = packs(0, 10);
+        assertEquals(packs, new Shard(1, 1).select(ROOT, packs));
+    }
+
+    private static List<Path> packs(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> ROOT.resolve("pack-" + i + ".zip")).collect(Collectors.toList());
+    }
+}
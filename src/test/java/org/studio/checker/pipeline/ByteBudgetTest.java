@@ -0,0 +1,149 @@
+package org.studio.checker.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ByteBudgetTest {
+
+    private static final long WAIT_MILLIS = 200;
+
+    @Test
+    void acquireAndRelease() throws InterruptedException {
+        ByteBudget budget = new ByteBudget(100);
+        budget.acquire(60);
+        budget.acquire(40);
+        assertEquals(100, budget.getUsed());
+        budget.release(60);
+        budget.release(40);
+        assertEquals(0, budget.getUsed());
+        assertEquals(2, budget.getAdmitted());
+        assertEquals(0, budget.getDelayed());
+        assertEquals(100, budget.getPeak());
+    }
+
+    @Test
+    void waitsUntilBytesAreReleased() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+        budget.acquire(80);
+        CompletableFuture<Void> waiting = acquireAsync(budget, 40);
+        assertFalse(isDoneWithin(waiting));
+        budget.release(80);
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(40, budget.getUsed());
+        assertEquals(1, budget.getDelayed());
+    }
+
+    @Test
+    void oversizedIsAdmittedAlone() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+        budget.acquire(500);
+        assertEquals(100, budget.getUsed());
+        assertEquals(1, budget.getOversized());
+        CompletableFuture<Void> waiting = acquireAsync(budget, 1);
+        assertFalse(isDoneWithin(waiting));
+        budget.release(500);
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(1, budget.getUsed());
+    }
+
+    @Test
+    void bytesAreAcquiredFromParent() throws InterruptedException {
+        ByteBudget parent = new ByteBudget(1000);
+        ByteBudget child = new ByteBudget(100, parent);
+        child.acquire(70);
+        assertEquals(70, child.getUsed());
+        assertEquals(70, parent.getUsed());
+        child.release(70);
+        assertEquals(0, child.getUsed());
+        assertEquals(0, parent.getUsed());
+    }
+
+    @Test
+    void childrenShareTheirParent() throws Exception {
+        ByteBudget parent = new ByteBudget(100);
+        ByteBudget first = new ByteBudget(100, parent);
+        ByteBudget second = new ByteBudget(100, parent);
+        first.acquire(80);
+        // Fits into its own budget, not into the parent one
+        CompletableFuture<Void> waiting = acquireAsync(second, 50);
+        assertFalse(isDoneWithin(waiting));
+        first.release(80);
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(50, second.getUsed());
+        assertEquals(50, parent.getUsed());
+        assertEquals(1, parent.getDelayed());
+    }
+
+    @Test
+    void interruptedWaitForParentReleasesLocalBytes() throws Exception {
+        ByteBudget parent = new ByteBudget(100);
+        ByteBudget child = new ByteBudget(100, parent);
+        parent.acquire(100);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> interrupted = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            started.countDown();
+            try {
+                child.acquire(10);
+                interrupted.complete(null);
+            } catch (InterruptedException e) {
+                interrupted.completeExceptionally(e);
+            }
+        });
+        t.start();
+        started.await();
+        // Local bytes acquired, waiting for the parent
+        waitUntil(() -> child.getUsed() == 10);
+        t.interrupt();
+        t.join(5000);
+        assertTrue(interrupted.isCompletedExceptionally());
+        assertEquals(0, child.getUsed());
+        assertEquals(100, parent.getUsed());
+    }
+
+    @Test
+    void negativeBytesAreIgnored() throws InterruptedException {
+        ByteBudget budget = new ByteBudget(100);
+        budget.acquire(-10);
+        assertEquals(0, budget.getUsed());
+        budget.release(-10);
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    void capacityIsAtLeastOneByte() {
+        assertEquals(1, new ByteBudget(0).getCapacity());
+    }
+
+    private static CompletableFuture<Void> acquireAsync(ByteBudget budget, long bytes) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                budget.acquire(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static boolean isDoneWithin(CompletableFuture<?> future) throws InterruptedException {
+        Thread.sleep(WAIT_MILLIS);
+        return future.isDone();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
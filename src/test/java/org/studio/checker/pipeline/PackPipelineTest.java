@@ -0,0 +1,157 @@
+package org.studio.checker.pipeline;
+
+import me.tongfei.progressbar.DelegatingProgressBarConsumer;
+import me.tongfei.progressbar.ProgressBar;
+import me.tongfei.progressbar.ProgressBarBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.studio.checker.engine.AssetPool;
+import org.studio.checker.engine.Cancellation;
+import org.studio.checker.engine.Watchdog;
+import studio.core.v1.exception.ConversionTimeoutException;
+import studio.core.v1.model.StageNode;
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.model.asset.MediaAsset;
+import studio.core.v1.model.asset.MediaAssetType;
+import studio.core.v1.service.AssetReader;
+import studio.core.v1.service.PackOutput;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PackPipelineTest {
+
+    private static final Duration ASSET_TIMEOUT = Duration.ofMillis(200);
+    private static final Duration TEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Watchdog watchdog = new Watchdog();
+    // Releases the hung decoders once the test is over
+    private final CountDownLatch hung = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        hung.countDown();
+        watchdog.close();
+    }
+
+    @Test
+    void hungDecodersDontStarveThePool() {
+        Set<String> converted = ConcurrentHashMap.newKeySet();
+        // Stuck in the first two assets, deaf to interruption
+        Function<MediaAsset, byte[]> decoder = a -> {
+            if (a.getName().startsWith("0") || a.getName().startsWith("1")) {
+                awaitUninterruptibly(hung);
+            }
+            converted.add(a.getName());
+            return a.getRawData();
+        };
+        PackPipeline pipeline = pipeline(new AssetPool(1), false);
+
+        assertTimeoutPreemptively(TEST_TIMEOUT, () -> assertThrows(ConversionTimeoutException.class,
+                () -> pipeline.run(pack(4), new Source(), null, decoder, decoder)));
+        assertEquals(Set.of("2.png", "3.png"), converted);
+    }
+
+    @Test
+    void failFastWaitsForTheRunningWrite() {
+        CountDownLatch writing = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        Function<MediaAsset, byte[]> decoder = a -> {
+            if (a.getName().startsWith("1")) {
+                // Fails while the first asset is written
+                awaitUninterruptibly(writing);
+                throw new IllegalStateException("Broken asset");
+            }
+            return new byte[]{1};
+        };
+        PackOutput output = new PackOutput() {
+            @Override
+            public void writeAsset(String assetName, byte[] rawData) {
+                running.incrementAndGet();
+                writing.countDown();
+                try {
+                    Thread.sleep(ASSET_TIMEOUT.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+
+            @Override
+            public void finish(StoryPack pack, boolean enriched) {
+                // nothing to finish
+            }
+
+            @Override
+            public void close() {
+                // nothing to close
+            }
+        };
+        PackPipeline pipeline = pipeline(new AssetPool(2), true);
+
+        assertTimeoutPreemptively(TEST_TIMEOUT, () -> assertThrows(IllegalStateException.class,
+                () -> pipeline.run(pack(2), new Source(), output, decoder, decoder)));
+        // Output may be closed
+        assertEquals(0, running.get());
+    }
+
+    private PackPipeline pipeline(AssetPool pool, boolean failFast) {
+        ProgressBar pb = new ProgressBarBuilder().setConsumer(new DelegatingProgressBarConsumer(s -> {})).build();
+        return new PackPipeline(pool, pool, new ByteBudget(64L << 20), pb, new Cancellation(), failFast, watchdog,
+                ASSET_TIMEOUT);
+    }
+
+    /** Pack of distinct images, without audio. */
+    private static StoryPack pack(int nodes) {
+        List<StageNode> stageNodes = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            MediaAsset image = new MediaAsset(i + ".png");
+            image.setType(MediaAssetType.PNG);
+            stageNodes.add(new StageNode(UUID.randomUUID(), image, null, null, null, null, null));
+        }
+        StoryPack pack = new StoryPack();
+        pack.setStageNodes(stageNodes);
+        return pack;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // ignored, as by a stuck native decoder
+            }
+        }
+    }
+
+    private static class Source implements AssetReader {
+
+        @Override
+        public long size(String assetName) {
+            return 16;
+        }
+
+        @Override
+        public byte[] read(String assetName) {
+            return new byte[16];
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
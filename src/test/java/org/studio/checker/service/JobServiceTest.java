@@ -0,0 +1,184 @@
+package org.studio.checker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.studio.checker.CheckResult;
+import studio.core.v1.utils.io.IoThrottle;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobServiceTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long IO_LIMIT = 1_000_000;
+    private static final int MAX_UPLOAD = 16;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void jobByPath() throws Exception {
+        Path pack = Files.write(dir.resolve("pack.zip"), new byte[]{1});
+        JobService.Submitter submitter = (packPath, outputDir, mode, onStart) -> {
+            onStart.run();
+            return CompletableFuture.completedFuture(CheckResult.ko(packPath, "Broken"));
+        };
+        try (JobService service = service(2, submitter)) {
+            HttpResponse<String> queued = post(service, "?mode=repair&path=" + URLEncoder.encode(pack.toString(), StandardCharsets.UTF_8));
+            assertEquals(202, queued.statusCode());
+            String id = OBJECT_MAPPER.readTree(queued.body()).get("id").asText();
+            JsonNode job = OBJECT_MAPPER.readTree(get(service, "/" + id).body());
+            assertEquals("DONE", job.get("status").asText());
+            assertEquals("REPAIR", job.get("mode").asText());
+            assertEquals("KO", job.get("result").asText());
+            assertEquals("Broken", job.get("message").asText());
+            assertEquals(404, get(service, "/" + id + "/output").statusCode());
+        }
+    }
+
+    @Test
+    void invalidRequests() throws Exception {
+        try (JobService service = service(2, (packPath, outputDir, mode, onStart) -> new CompletableFuture<>())) {
+            assertEquals(400, post(service, "?mode=unknown").statusCode());
+            assertEquals(400, post(service, "?path=" + URLEncoder.encode(dir.resolve("none.zip").toString(), StandardCharsets.UTF_8)).statusCode());
+            assertEquals(404, get(service, "/unknown").statusCode());
+        }
+    }
+
+    @Test
+    void pathOutsideRootIsForbidden(@TempDir Path outside) throws Exception {
+        Path pack = Files.write(outside.resolve("pack.zip"), new byte[]{1});
+        Path link = Files.createSymbolicLink(dir.resolve("link.zip"), pack);
+        try (JobService service = service(2, (packPath, outputDir, mode, onStart) -> new CompletableFuture<>())) {
+            assertEquals(403, post(service, "?path=" + URLEncoder.encode("../pack.zip", StandardCharsets.UTF_8)).statusCode());
+            assertEquals(403, post(service, "?path=" + URLEncoder.encode(pack.toString(), StandardCharsets.UTF_8)).statusCode());
+            assertEquals(403, post(service, "?path=" + link.getFileName()).statusCode());
+        }
+        // Without root, only uploads
+        try (JobService service = new JobService(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, dir,
+                null, MAX_UPLOAD, new IoThrottle(0, 0), (packPath, outputDir, mode, onStart) -> new CompletableFuture<>())) {
+            assertEquals(403, post(service, "?path=link.zip").statusCode());
+        }
+    }
+
+    @Test
+    void largeUploadIsRejected() throws Exception {
+        try (JobService service = service(1, (packPath, outputDir, mode, onStart) -> new CompletableFuture<>())) {
+            byte[] large = new byte[MAX_UPLOAD + 1];
+            assertEquals(413, client.send(request(service, "?mode=check").POST(HttpRequest.BodyPublishers.ofByteArray(large)).build(),
+                    HttpResponse.BodyHandlers.ofString()).statusCode());
+            // Length not announced : stopped while copied
+            assertEquals(413, client.send(request(service, "?mode=check").POST(HttpRequest.BodyPublishers.ofInputStream(
+                    () -> new ByteArrayInputStream(large))).build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+            // Capacity is given back, partial upload deleted
+            try (var files = Files.list(dir)) {
+                assertEquals(0, files.count());
+            }
+            assertEquals(202, upload(service).statusCode());
+        }
+    }
+
+    @Test
+    void fullQueueIsRejected() throws Exception {
+        CompletableFuture<CheckResult> running = new CompletableFuture<>();
+        try (JobService service = service(1, (packPath, outputDir, mode, onStart) -> running)) {
+            HttpResponse<String> first = upload(service);
+            assertEquals(202, first.statusCode());
+            HttpResponse<String> second = upload(service);
+            assertEquals(429, second.statusCode());
+            assertEquals("5", second.headers().firstValue("Retry-After").orElse(null));
+            // Capacity is given back once done
+            String id = OBJECT_MAPPER.readTree(first.body()).get("id").asText();
+            running.complete(CheckResult.ko(dir.resolve(id + ".zip"), "Broken"));
+            assertEquals(202, upload(service).statusCode());
+        }
+    }
+
+    @Test
+    void rejectedSubmitReleasesCapacity() throws Exception {
+        try (JobService service = service(1, (packPath, outputDir, mode, onStart) -> {
+            throw new RejectedExecutionException("Stopping");
+        })) {
+            assertEquals(503, upload(service).statusCode());
+            assertEquals(503, upload(service).statusCode());
+            // Uploads of rejected jobs are not kept
+            try (var files = Files.list(dir)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    void status() throws Exception {
+        CompletableFuture<CheckResult> running = new CompletableFuture<>();
+        try (JobService service = service(3, (packPath, outputDir, mode, onStart) -> {
+            onStart.run();
+            return running;
+        })) {
+            assertEquals(202, upload(service).statusCode());
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + service.getPort() + "/status")).GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            JsonNode status = OBJECT_MAPPER.readTree(response.body());
+            assertEquals(1, status.get("jobs").get("RUNNING").asInt());
+            assertEquals(0, status.get("jobs").get("QUEUED").asInt());
+            assertEquals(2, status.get("capacity").asInt());
+            // State of the throttle given to the service
+            assertTrue(status.get("io").has("throttling"));
+            assertEquals(IO_LIMIT, status.get("io").get("bytesPerSecond").asLong());
+        }
+    }
+
+    @Test
+    void ioStatusOfLimitedThrottle() {
+        Map<String, Object> io = JobService.ioStatus(new IoThrottle(1000, 0));
+        assertEquals(false, io.get("throttling"));
+        assertEquals(1000L, io.get("bytesPerSecond"));
+        assertEquals(1000L, io.get("availableBytes"));
+        assertFalse(io.containsKey("availableOps"));
+    }
+
+    private JobService service(int capacity, JobService.Submitter submitter) throws IOException {
+        return new JobService(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), capacity, dir, dir, MAX_UPLOAD,
+                new IoThrottle(IO_LIMIT, 0), submitter);
+    }
+
+    private HttpResponse<String> upload(JobService service) throws IOException, InterruptedException {
+        return client.send(request(service, "?mode=check").POST(HttpRequest.BodyPublishers.ofByteArray(new byte[]{1})).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(JobService service, String query) throws IOException, InterruptedException {
+        return client.send(request(service, query).POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(JobService service, String path) throws IOException, InterruptedException {
+        return client.send(request(service, path).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest.Builder request(JobService service, String suffix) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + service.getPort() + "/jobs" + suffix));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.service.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArchiveStreamReaderTest {
+
+    @Test
+    void assetsInMemory() throws IOException {
+        assertAssets(ArchiveStreamReader.MEMORY_THRESHOLD);
+    }
+
+    @Test
+    void assetsSpooledAboveThreshold() throws IOException {
+        // First asset in memory, the next ones spooled
+        assertAssets(1500);
+        assertAssets(0);
+    }
+
+    private static void assertAssets(long threshold) throws IOException {
+        byte[] small = asset(1000, 1);
+        byte[] large = asset(100_000, 2);
+        byte[] empty = new byte[0];
+        try (ArchiveStreamReader reader = ArchiveStreamReader.read(new ByteArrayInputStream(zip(small, large, empty)), threshold)) {
+            assertEquals(small.length, reader.size("small.mp3"));
+            assertArrayEquals(small, reader.read("small.mp3"));
+            assertEquals(large.length, reader.size("large.mp3"));
+            assertArrayEquals(large, reader.read("large.mp3"));
+            // Read again
+            assertArrayEquals(large, reader.read("large.mp3"));
+            assertArrayEquals(empty, reader.read("empty.mp3"));
+            assertThrows(NoSuchFileException.class, () -> reader.read("none.mp3"));
+        }
+    }
+
+    private static byte[] asset(int size, int seed) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) seed);
+        data[size - 1] = (byte) (seed + 1);
+        return data;
+    }
+
+    private static byte[] zip(byte[] small, byte[] large, byte[] empty) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.ASSETS_DIR + "small.mp3"));
+            zos.write(small);
+            zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.ASSETS_DIR + "large.mp3"));
+            zos.write(large);
+            zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.ASSETS_DIR + "empty.mp3"));
+            zos.write(empty);
+            // Descriptor after the assets
+            zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.STORY_JSON));
+            zos.write("{}".getBytes(StandardCharsets.UTF_8));
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.service.archive;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import studio.core.v1.model.StoryPack;
+import studio.core.v1.model.metadata.StoryPackMetadata;
+import studio.core.v1.service.PackSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StoryMetadataParserTest {
+
+    private static final String PACK_UUID = "11111111-2222-3333-4444-555555555555";
+    private static final String FIRST_UUID = "00000000-0000-0000-0000-000000000001";
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sameMetadataAsFullParse() throws IOException {
+        String json = story("\"uuid\": \"" + PACK_UUID + "\", ", 50, "");
+        assertSameAsFullParse(pack("full.zip", json, new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void sectorSize() throws IOException {
+        assertEquals(42, parse(story("\"sectorSize\": 42, ", 1, "")).getSectorSize());
+        assertNull(parse(story("\"sectorSize\": null, ", 1, "")).getSectorSize());
+    }
+
+    @Test
+    void packUuidFromFirstNode() throws IOException {
+        StoryPackMetadata metadata = assertSameAsFullParse(pack("first.zip", story("", 20, ""), null));
+        assertEquals(UUID.fromString(FIRST_UUID), metadata.getUuid());
+        assertEquals(UUID.fromString(FIRST_UUID), metadata.getUuidFirst());
+    }
+
+    @Test
+    void packUuidAfterNodes() throws IOException {
+        StoryPackMetadata metadata = assertSameAsFullParse(pack("late.zip", story("", 20, ", \"uuid\": \"" + PACK_UUID + "\""), null));
+        assertEquals(UUID.fromString(PACK_UUID), metadata.getUuid());
+        assertEquals(UUID.fromString(FIRST_UUID), metadata.getUuidFirst());
+    }
+
+    @Test
+    void noStoryDescriptor() throws IOException {
+        assertNull(new ArchiveStoryPackReader().readMetadata(pack("none.zip", null, null)));
+    }
+
+    @Test
+    void stopsOnceAllFieldsAreMet() throws IOException {
+        String json = story("\"uuid\": \"" + PACK_UUID + "\", ", 3, "");
+        // Broken after the first node : never read
+        String truncated = json.substring(0, json.indexOf("\"uuid\": \"" + uuid(1))) + "!!!";
+        StoryPackMetadata metadata = parse(truncated);
+        assertEquals("Pack title", metadata.getTitle());
+        assertEquals(UUID.fromString(PACK_UUID), metadata.getUuid());
+        assertEquals(UUID.fromString(FIRST_UUID), metadata.getUuidFirst());
+    }
+
+    @Test
+    void invalidUuid() {
+        String json = story("\"uuid\": \"not-a-uuid\", ", 1, "");
+        assertThrows(JsonParseException.class, () -> parse(json));
+    }
+
+    @Test
+    void notAnObject() {
+        assertThrows(JsonParseException.class, () -> parse("[]"));
+    }
+
+    private static StoryPackMetadata parse(String json) throws IOException {
+        return StoryMetadataParser.parse(FACTORY, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static StoryPackMetadata assertSameAsFullParse(Path zipPath) throws IOException {
+        ArchiveStoryPackReader reader = new ArchiveStoryPackReader();
+        StoryPackMetadata streamed = reader.readMetadata(zipPath);
+        StoryPack full;
+        try (PackSession session = reader.open(zipPath)) {
+            full = session.getStructure();
+        }
+        assertEquals(full.getFormat(), streamed.getFormat());
+        assertEquals(full.getUuid(), streamed.getUuid());
+        assertEquals(full.getVersion(), streamed.getVersion());
+        assertEquals(full.isNightModeAvailable(), streamed.isNightModeAvailable());
+        assertEquals(full.getEnriched().getTitle(), streamed.getTitle());
+        assertEquals(full.getEnriched().getDescription(), streamed.getDescription());
+        assertEquals(full.getStageNodes().get(0).getUuid(), streamed.getUuidFirst());
+        assertArrayEquals(full.getEnriched().getThumbnail(), streamed.getThumbnail());
+        return streamed;
+    }
+
+    /** Story descriptor with the given number of nodes, and extra top-level fields before and after them. */
+    private static String story(String before, int nodes, String after) {
+        StringBuilder sb = new StringBuilder("{\"format\": \"v1\", ").append(before)
+                .append("\"title\": \"Pack title\", \"version\": 3, \"description\": \"Pack description\", ")
+                .append("\"nightModeAvailable\": true, \"stageNodes\": [");
+        for (int i = 0; i < nodes; i++) {
+            sb.append(i > 0 ? ", " : "").append("{\"name\": \"Node ").append(i).append("\", \"uuid\": \"").append(uuid(i))
+                    .append("\", \"image\": null, \"audio\": \"").append(i).append(".mp3\", \"okTransition\": null, ")
+                    .append("\"homeTransition\": null, \"controlSettings\": {\"wheel\": false, \"ok\": true, \"home\": true, ")
+                    .append("\"pause\": false, \"autojump\": false}, \"type\": \"stage\"}");
+        }
+        return sb.append("], \"actionNodes\": []").append(after).append("}").toString();
+    }
+
+    private static String uuid(int node) {
+        return String.format("00000000-0000-0000-0000-%012d", node + 1);
+    }
+
+    private Path pack(String name, String storyJson, byte[] thumbnail) throws IOException {
+        Path zipPath = tempDir.resolve(name);
+        try (OutputStream os = Files.newOutputStream(zipPath);
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            if (storyJson != null) {
+                zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.STORY_JSON));
+                zos.write(storyJson.getBytes(StandardCharsets.UTF_8));
+            }
+            if (thumbnail != null) {
+                zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.THUMBNAIL_PNG));
+                zos.write(thumbnail);
+            }
+            zos.putNextEntry(new ZipEntry(ArchiveStoryPackReader.ASSETS_DIR + "0.mp3"));
+            zos.write(new byte[]{0});
+        }
+        return zipPath;
+    }
+}
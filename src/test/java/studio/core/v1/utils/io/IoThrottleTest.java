@@ -0,0 +1,55 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.utils.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IoThrottleTest {
+
+    @Test
+    void unlimited() throws InterruptedIOException {
+        IoThrottle throttle = new IoThrottle(0, 0);
+        throttle.acquire(1000);
+        assertFalse(throttle.isLimited());
+        assertFalse(throttle.isThrottling());
+        assertEquals(-1, throttle.getAvailableBytes());
+        assertEquals(-1, throttle.getAvailableOps());
+        assertEquals(1000, throttle.getBytes());
+        assertEquals(1, throttle.getOps());
+    }
+
+    @Test
+    void liveState() throws Exception {
+        IoThrottle throttle = new IoThrottle(1_000_000, 0);
+        throttle.acquire(400_000);
+        long available = throttle.getAvailableBytes();
+        assertTrue(available >= 600_000 && available <= 1_000_000, "Available : " + available);
+        assertFalse(throttle.isThrottling());
+        // In debt : the next request waits about half a second
+        Thread worker = new Thread(() -> {
+            try {
+                throttle.acquire(1_100_000);
+            } catch (InterruptedIOException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        worker.start();
+        while (throttle.getWaits() == 0 && worker.isAlive()) {
+            Thread.sleep(1);
+        }
+        assertTrue(throttle.isThrottling());
+        assertTrue(throttle.getAvailableBytes() < 0);
+        worker.join();
+        assertFalse(throttle.isThrottling());
+        assertEquals(1, throttle.getWaits());
+    }
+}
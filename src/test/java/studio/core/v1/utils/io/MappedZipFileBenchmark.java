@@ -0,0 +1,152 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.utils.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Parallel read of all the entries of a pack : zipfs (former pack reader), {@link ZipFile} and {@link MappedZipFile}.
+ * <p>
+ * Not a test, run it with :
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=studio.core.v1.utils.io.MappedZipFileBenchmark -Dexec.args="[pack.zip] [iterations]"}
+ * <br>
+ * Without a pack, a synthetic one with thousands of assets (half stored, half deflated) is used.
+ */
+public class MappedZipFileBenchmark {
+
+    private static final int ASSETS = 5000;
+    private static final int ITERATIONS = 10;
+
+    @FunctionalInterface
+    private interface Reader {
+        long readAll(Path zipPath) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path pack = args.length > 0 ? Paths.get(args[0]) : syntheticPack();
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : ITERATIONS;
+        System.out.printf("%s : %s, %d iterations, %d cores%n", pack.getFileName(),
+                FileUtils.readableByteSize(Files.size(pack)), iterations, Runtime.getRuntime().availableProcessors());
+        try {
+            // Twice : the first round warms up
+            for (int round = 0; round < 2; round++) {
+                run("zipfs", MappedZipFileBenchmark::readZipFs, pack, iterations);
+                run("ZipFile", MappedZipFileBenchmark::readZipFile, pack, iterations);
+                run("MappedZipFile", MappedZipFileBenchmark::readMapped, pack, iterations);
+            }
+        } finally {
+            if (args.length == 0) {
+                Files.delete(pack);
+            }
+        }
+    }
+
+    private static void run(String name, Reader reader, Path pack, int iterations) throws IOException {
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            bytes += reader.readAll(pack);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-14s %6d ms per pack, %s/s%n", name, millis / iterations,
+                FileUtils.readableByteSize(millis > 0 ? bytes * 1000 / millis : bytes));
+    }
+
+    private static long readZipFs(Path zipPath) throws IOException {
+        try (FileSystem zipFs = FileSystems.newFileSystem(zipPath, ClassLoader.getSystemClassLoader())) {
+            List<Path> entries;
+            try (Stream<Path> paths = Files.walk(zipFs.getPath("/"))) {
+                entries = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            return readParallel(entries, p -> Files.readAllBytes(p).length);
+        }
+    }
+
+    private static long readZipFile(Path zipPath) throws IOException {
+        try (ZipFile zip = new ZipFile(zipPath.toFile())) {
+            return readParallel(Collections.list(zip.entries()), e -> {
+                try (InputStream is = zip.getInputStream(e)) {
+                    return is.readAllBytes().length;
+                }
+            });
+        }
+    }
+
+    private static long readMapped(Path zipPath) throws IOException {
+        try (MappedZipFile zip = new MappedZipFile(zipPath)) {
+            return readParallel(List.copyOf(zip.entries()), e -> zip.read(e).length);
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryReader<T> {
+        int read(T entry) throws IOException;
+    }
+
+    private static <T> long readParallel(List<T> entries, EntryReader<T> reader) {
+        LongAdder bytes = new LongAdder();
+        entries.parallelStream().forEach(e -> {
+            try {
+                bytes.add(reader.read(e));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        return bytes.sum();
+    }
+
+    /** Images are stored (already compressed), sounds deflated, as in real packs. */
+    private static Path syntheticPack() throws IOException {
+        Path pack = Files.createTempFile("benchmark", ".zip");
+        Random random = new Random(42);
+        try (OutputStream os = Files.newOutputStream(pack);
+             ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (int i = 0; i < ASSETS; i++) {
+                byte[] data = new byte[8 * 1024 + random.nextInt(24 * 1024)];
+                boolean stored = i % 2 == 0;
+                if (stored) {
+                    random.nextBytes(data);
+                } else {
+                    // Compressible : repeated pattern with noise
+                    for (int j = 0; j < data.length; j++) {
+                        data[j] = (byte) (j % 64 == 0 ? random.nextInt() : j % 251);
+                    }
+                }
+                ZipEntry entry = new ZipEntry("assets/" + i + (stored ? ".bmp" : ".wav"));
+                if (stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCompressedSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                zos.putNextEntry(entry);
+                zos.write(data);
+                zos.closeEntry();
+            }
+        }
+        return pack;
+    }
+}
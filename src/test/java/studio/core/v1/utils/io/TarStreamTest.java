@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package studio.core.v1.utils.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TarStreamTest {
+
+    @Test
+    void roundTrip() throws IOException {
+        Random random = new Random(42);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("empty.zip", new byte[0]);
+        entries.put("one-block.zip", bytes(random, TarInputStream.BLOCK));
+        entries.put("dir/padded.zip", bytes(random, 3 * TarInputStream.BLOCK + 17));
+        // GNU long name entry
+        entries.put("vendor/" + "a".repeat(120) + "/pack.zip", bytes(random, 1000));
+        entries.put("élève.zip", bytes(random, 10));
+
+        Map<String, byte[]> read = readAll(write(entries));
+        assertEquals(entries.keySet(), read.keySet());
+        entries.forEach((name, data) -> assertArrayEquals(data, read.get(name), name));
+    }
+
+    @Test
+    void entriesCanBeSkipped() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("first.zip", bytes(new Random(1), 2000));
+        entries.put("second.zip", bytes(new Random(2), 700));
+        TarInputStream tar = new TarInputStream(new ByteArrayInputStream(write(entries)));
+        TarInputStream.TarEntry first = tar.getNextEntry();
+        assertNotNull(first);
+        assertEquals(2000, first.getSize());
+        // Partially read
+        assertEquals(10, tar.read(new byte[10]));
+        TarInputStream.TarEntry second = tar.getNextEntry();
+        assertNotNull(second);
+        assertEquals("second.zip", second.getName());
+        assertTrue(second.isFile());
+        assertArrayEquals(entries.get("second.zip"), tar.readAllBytes());
+        assertNull(tar.getNextEntry());
+    }
+
+    @Test
+    void endOfEntryIsEndOfStream() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("pack.zip", bytes(new Random(3), 100));
+        TarInputStream tar = new TarInputStream(new ByteArrayInputStream(write(entries)));
+        tar.getNextEntry();
+        assertEquals(100, tar.readAllBytes().length);
+        assertEquals(-1, tar.read());
+        assertEquals(-1, tar.read(new byte[10], 0, 10));
+    }
+
+    @Test
+    void streamedEntryShorterThanSize() {
+        TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream());
+        assertThrows(EOFException.class, () -> tar.writeEntry("short.zip", 100, new ByteArrayInputStream(new byte[10])));
+    }
+
+    @Test
+    void emptyArchive() throws IOException {
+        assertNull(new TarInputStream(new ByteArrayInputStream(write(Map.of()))).getNextEntry());
+        assertNull(new TarInputStream(new ByteArrayInputStream(new byte[0])).getNextEntry());
+    }
+
+    private static byte[] write(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(baos)) {
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                tar.writeEntry(e.getKey(), e.getValue());
+            }
+        }
+        assertEquals(0, baos.size() % TarInputStream.BLOCK);
+        return baos.toByteArray();
+    }
+
+    private static Map<String, byte[]> readAll(byte[] archive) throws IOException {
+        Map<String, byte[]> read = new LinkedHashMap<>();
+        TarInputStream tar = new TarInputStream(new ByteArrayInputStream(archive));
+        for (TarInputStream.TarEntry e = tar.getNextEntry(); e != null; e = tar.getNextEntry()) {
+            assertTrue(e.isFile(), e.getName());
+            byte[] data = tar.readAllBytes();
+            assertEquals(e.getSize(), data.length, e.getName());
+            read.put(e.getName(), data);
+        }
+        return read;
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+}